@@ -0,0 +1,112 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compares two JMH JSON result files (-rf json) and prints a Markdown table.
+ *
+ * A change is only reported as faster/slower when the score +/- error
+ * intervals of both runs do not overlap; anything else is noise.
+ *
+ * Usage: BenchmarkReport baseline.json current.json
+ */
+public class BenchmarkReport {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BenchmarkReport <baseline.json> <current.json>");
+            System.exit(2);
+        }
+
+        Path baselinePath = Path.of(args[0]);
+        Map<String, JsonObject> baseline = Files.exists(baselinePath) ? load(baselinePath) : Map.of();
+        Map<String, JsonObject> current = load(Path.of(args[1]));
+        if (baseline.isEmpty()) {
+            System.out.println("No baseline at " + baselinePath + ", showing current results only.\n");
+        }
+
+        System.out.println("| Benchmark | Mode | Baseline | Current | Change | Verdict |");
+        System.out.println("|---|---|---:|---:|---:|---|");
+
+        int slower = 0;
+        for (Map.Entry<String, JsonObject> entry : current.entrySet()) {
+            JsonObject now = entry.getValue();
+            JsonObject before = baseline.get(entry.getKey());
+            String mode = now.getString("mode");
+
+            String change = "";
+            String verdict = "new";
+            if (before != null) {
+                double was = score(before);
+                double is = score(now);
+                change = String.format("%+.1f%%", (is - was) / was * 100);
+
+                boolean overlap = is - error(now) <= was + error(before) && was - error(before) <= is + error(now);
+                boolean higherIsBetter = "thrpt".equals(mode);
+                if (overlap) {
+                    verdict = "~";
+                } else if ((is > was) == higherIsBetter) {
+                    verdict = "faster";
+                } else {
+                    verdict = "SLOWER";
+                    slower++;
+                }
+            }
+
+            System.out.printf("| %s | %s | %s | %s | %s | %s |%n",
+                entry.getKey(), mode, before != null ? format(before) : "-", format(now), change, verdict);
+        }
+
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("| %s | %s | %s | - | | removed |%n", name, baseline.get(name).getString("mode"), format(baseline.get(name)));
+            }
+        }
+
+        System.out.println();
+        System.out.println(slower == 0 ? "No significant regressions." : slower + " benchmark(s) significantly slower.");
+    }
+
+    // Keyed by benchmark name plus its @Param values, e.g. RowConversionBenchmark.usersJson(rows=1000)
+    private static Map<String, JsonObject> load(Path file) throws IOException {
+        Map<String, JsonObject> results = new TreeMap<>();
+        JsonArray runs = new JsonArray(Files.readString(file));
+        for (int i = 0; i < runs.size(); i++) {
+            JsonObject run = runs.getJsonObject(i);
+            String name = run.getString("benchmark").replaceFirst("^com\\.example\\.", "");
+            JsonObject params = run.getJsonObject("params");
+            if (params != null && !params.isEmpty()) {
+                Map<String, Object> sorted = new LinkedHashMap<>(new TreeMap<>(params.getMap()));
+                name += sorted.toString().replace('{', '(').replace('}', ')');
+            }
+            results.put(name, run);
+        }
+        return results;
+    }
+
+    private static double score(JsonObject run) {
+        return number(run.getJsonObject("primaryMetric").getValue("score"));
+    }
+
+    private static double error(JsonObject run) {
+        double error = number(run.getJsonObject("primaryMetric").getValue("scoreError"));
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    // JMH writes NaN as a string
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    private static String format(JsonObject run) {
+        return String.format("%.3f +/- %.3f %s", score(run), error(run), run.getJsonObject("primaryMetric").getString("scoreUnit"));
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bench;
+
+import java.util.List;
+
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.impl.ArrayTuple;
+
+/**
+ * In-memory Row with fixed column names, so row conversion can be measured
+ * without a database. Values should use the types the pg client decodes to
+ * (e.g. Numeric for NUMERIC columns).
+ */
+public class FixtureRow extends ArrayTuple implements Row {
+
+    private final List<String> columns;
+
+    public FixtureRow(List<String> columns, Object... values) {
+        super(columns.size());
+        this.columns = columns;
+        for (Object value : values) {
+            addValue(value);
+        }
+    }
+
+    @Override
+    public String getColumnName(int pos) {
+        return pos < columns.size() ? columns.get(pos) : null;
+    }
+
+    @Override
+    public int getColumnIndex(String column) {
+        return columns.indexOf(column);
+    }
+}
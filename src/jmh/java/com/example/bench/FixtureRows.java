@@ -0,0 +1,53 @@
+package com.example.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.data.Numeric;
+
+/**
+ * Synthetic result sets shaped like the real queries.
+ */
+public final class FixtureRows {
+
+    // ProductService.PRODUCT_COLUMNS
+    private static final List<String> PRODUCT_COLUMNS =
+        List.of("id", "name", "description", "price", "stock", "image_url", "salesperson_id");
+
+    // UserService.USER_COLUMNS
+    private static final List<String> USER_COLUMNS =
+        List.of("id", "username", "full_name", "email", "role_id");
+
+    private FixtureRows() {
+    }
+
+    public static List<Row> products(int count) {
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rows.add(new FixtureRow(PRODUCT_COLUMNS,
+                i,
+                "Product " + i,
+                "Description of product " + i + ", long enough to look like real catalog text",
+                Numeric.create(new java.math.BigDecimal(i % 500 + ".99")),
+                i % 40,
+                i % 3 == 0 ? null : "/uploads/product-" + i + ".png",
+                i % 7));
+        }
+        return rows;
+    }
+
+    public static List<Row> users(int count) {
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            boolean salesperson = i % 2 == 0;
+            rows.add(new FixtureRow(USER_COLUMNS,
+                i,
+                "user" + i,
+                "User Number " + i,
+                "user" + i + "@example.com",
+                salesperson ? 1 : 2));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.middleware;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.util.JwtUtil;
+
+/**
+ * Token checks done by JwtAuthHandler.handle on every authenticated request:
+ * a full signature verification versus a verified-token cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtAuthBenchmark {
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        token = JwtUtil.generateToken(42, "salesperson42", "SALESPERSON");
+        JwtAuthHandler.authenticate(token);
+    }
+
+    @Benchmark
+    public DecodedJWT verifyUncached() {
+        return JwtUtil.verifyToken(token);
+    }
+
+    @Benchmark
+    public VerifiedTokenCache.VerifiedToken authenticateCached() {
+        return JwtAuthHandler.authenticate(token);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Login password check: AuthService.checkPassword through the PasswordService
+ * worker pool, against a bare BCrypt.checkpw on the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10"})
+    public int cost;
+
+    private Vertx vertx;
+    private AuthService authService;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        PasswordService passwordService = PasswordService.shared(vertx, new JsonObject().put("cost", cost));
+        authService = new AuthService(null, passwordService);
+        hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(cost));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Boolean checkPassword() {
+        return authService.checkPassword(PASSWORD, hash).toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public boolean bcryptCheckpw() {
+        return BCrypt.checkpw(PASSWORD, hash);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.bench.FixtureRows;
+import com.example.util.RowJsonWriter;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.sqlclient.Row;
+
+/**
+ * Row to JSON conversion and encoding for the product and user listings:
+ * the JsonObject-per-row path against RowJsonWriter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RowConversionBenchmark {
+
+    @Param({"10", "1000"})
+    public int rows;
+
+    private static final Function<Integer, String> ROLE_NAMES = id -> id == 1 ? "SALESPERSON" : "ACCOUNTANT";
+    private static final RowJsonWriter USER_JSON = UserService.userJsonWriter(ROLE_NAMES);
+
+    private List<Row> products;
+    private List<Row> users;
+
+    @Setup
+    public void setUp() {
+        products = FixtureRows.products(rows);
+        users = FixtureRows.users(rows);
+    }
+
+    @Benchmark
+    public Buffer productsJsonArrayFromRows() {
+        JsonArray array = new JsonArray();
+        for (Row row : products) {
+            array.add(row.toJson());
+        }
+        return array.toBuffer();
+    }
+
+    @Benchmark
+    public Buffer productsRowJsonWriter() {
+        return ProductService.PRODUCT_JSON.writeArray(products, products.size());
+    }
+
+    @Benchmark
+    public Buffer usersJson() {
+        JsonArray array = new JsonArray();
+        for (Row row : users) {
+            array.add(UserService.userJson(row, ROLE_NAMES));
+        }
+        return array.toBuffer();
+    }
+
+    @Benchmark
+    public Buffer usersRowJsonWriter() {
+        return USER_JSON.writeArray(users, users.size());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Throwaway PostgreSQL (real binaries, no container) with the application
+ * schema, every db/migrations script and seeded data.
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+
+    public static final String DATABASE = "sms";
+    public static final String USER = "vertx_user";
+    public static final String PASSWORD = "12345";
+
+    // Every seeded customer and user logs in with this password
+    public static final String SEED_PASSWORD = "loadtest";
+
+    private final EmbeddedPostgres postgres;
+
+    private EmbeddedDatabase(EmbeddedPostgres postgres) {
+        this.postgres = postgres;
+    }
+
+    public static EmbeddedDatabase start(LoadTestOptions options) throws IOException, SQLException {
+        EmbeddedDatabase db = new EmbeddedDatabase(EmbeddedPostgres.builder().start());
+        try {
+            db.createDatabase();
+            db.applySchema();
+            db.seed(options);
+        } catch (IOException | SQLException | RuntimeException e) {
+            db.close();
+            throw e;
+        }
+        return db;
+    }
+
+    public int getPort() {
+        return postgres.getPort();
+    }
+
+    private void createDatabase() throws SQLException {
+        try (Connection conn = postgres.getPostgresDatabase().getConnection();
+             Statement statement = conn.createStatement()) {
+            statement.execute("CREATE ROLE " + USER + " LOGIN PASSWORD '" + PASSWORD + "'");
+            statement.execute("CREATE DATABASE " + DATABASE + " OWNER " + USER);
+        }
+    }
+
+    private void applySchema() throws IOException, SQLException {
+        try (Connection conn = connect(); Statement statement = conn.createStatement()) {
+            statement.execute(resource("loadtest/schema.sql"));
+            for (Path migration : migrations()) {
+                System.out.println("Applying " + migration.getFileName());
+                statement.execute(Files.readString(migration));
+            }
+        }
+    }
+
+    private void seed(LoadTestOptions options) throws SQLException {
+        // One hash for everyone: hashing thousands of passwords would dominate startup
+        String hash = BCrypt.hashpw(SEED_PASSWORD, BCrypt.gensalt(10));
+
+        try (Connection conn = connect()) {
+            try (PreparedStatement products = conn.prepareStatement(
+                "INSERT INTO products (name, description, price, stock, image_url, salesperson_id) " +
+                "SELECT 'Product ' || g, 'Load test product number ' || g, (g % 500) + 0.99, g % 40, " +
+                "'/uploads/product-' || g || '.png', g % 10 FROM generate_series(1, ?) g")) {
+                products.setInt(1, options.products());
+                products.execute();
+            }
+            // Enough stock that checkout contention, not running out, is what gets measured
+            try (PreparedStatement hot = conn.prepareStatement("UPDATE products SET stock = 1000000000 WHERE id <= ?")) {
+                hot.setInt(1, options.hotProducts());
+                hot.execute();
+            }
+            try (PreparedStatement customers = conn.prepareStatement(
+                "INSERT INTO customers (name, email, phone, address, portal_access, password) " +
+                "SELECT 'Customer ' || g, 'customer' || g || '@example.com', '555-' || g, g || ' Load Test Street', true, ? " +
+                "FROM generate_series(1, ?) g")) {
+                customers.setString(1, hash);
+                customers.setInt(2, options.customers());
+                customers.execute();
+            }
+            try (PreparedStatement users = conn.prepareStatement(
+                "INSERT INTO users (username, password_hash, role_id, full_name, email) " +
+                "SELECT 'user' || g, ?, 1 + g % 2, 'User ' || g, 'user' || g || '@example.com' FROM generate_series(1, ?) g")) {
+                users.setString(1, hash);
+                users.setInt(2, options.users());
+                users.execute();
+            }
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("ANALYZE");
+            }
+        }
+        System.out.printf("Seeded %d products, %d customers, %d users%n",
+            options.products(), options.customers(), options.users());
+    }
+
+    private Connection connect() throws SQLException {
+        return postgres.getDatabase(USER, DATABASE).getConnection();
+    }
+
+    // Migrations are read from the application's own classpath, in file name order
+    private static List<Path> migrations() throws IOException {
+        URL dir = EmbeddedDatabase.class.getClassLoader().getResource("db/migrations");
+        if (dir == null) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(Path.of(dir.toURI()))) {
+            return files.filter(file -> file.toString().endsWith(".sql")).sorted().collect(Collectors.toList());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = EmbeddedDatabase.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        postgres.close();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+
+/**
+ * Generates load with either workload model and records per-operation latency.
+ *
+ * Closed model: a fixed number of users each send their next request as soon
+ * as the previous one completes, so throughput adapts to the server.
+ * Open model: requests arrive at a fixed rate whatever the server does, and
+ * latency is measured from the intended send time so queueing delay is not
+ * hidden (coordinated omission). Arrivals beyond the in-flight cap are
+ * counted as dropped rather than sent late.
+ *
+ * Only requests started after the warmup and before the end are recorded.
+ */
+public class LoadDriver {
+
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Vertx vertx;
+    private final WebClient client;
+    private final Workload workload;
+    private final LoadTestOptions options;
+    private final RouteStats[] stats;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private long recordFrom;
+    private long stopAt;
+
+    public LoadDriver(Vertx vertx, WebClient client, Workload workload, LoadTestOptions options) {
+        this.vertx = vertx;
+        this.client = client;
+        this.workload = workload;
+        this.options = options;
+        this.stats = new RouteStats[workload.names().size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new RouteStats(workload.name(i));
+        }
+    }
+
+    public RouteStats[] getStats() {
+        return stats;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public Future<Void> run() {
+        Promise<Void> finished = Promise.promise();
+        vertx.runOnContext(v -> {
+            long now = System.nanoTime();
+            recordFrom = now + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+            stopAt = recordFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+            if (options.openModel()) {
+                runOpen(now, finished);
+            } else {
+                runClosed(finished);
+            }
+        });
+        return finished.future();
+    }
+
+    private void runClosed(Promise<Void> finished) {
+        AtomicInteger users = new AtomicInteger(options.concurrency());
+        for (int i = 0; i < options.concurrency(); i++) {
+            nextClosedRequest(users, finished);
+        }
+    }
+
+    private void nextClosedRequest(AtomicInteger users, Promise<Void> finished) {
+        if (System.nanoTime() >= stopAt) {
+            if (users.decrementAndGet() == 0) {
+                finished.complete();
+            }
+            return;
+        }
+        int operation = workload.pick(ThreadLocalRandom.current());
+        long start = System.nanoTime();
+        workload.send(operation, client).onComplete(ar -> {
+            record(operation, start, ar);
+            nextClosedRequest(users, finished);
+        });
+    }
+
+    private void runOpen(long start, Promise<Void> finished) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long[] issued = {0};
+
+        vertx.setPeriodic(1, timer -> {
+            long now = System.nanoTime();
+            long due = (Math.min(now, stopAt) - start) / intervalNanos;
+
+            while (issued[0] < due) {
+                long intended = start + issued[0] * intervalNanos;
+                issued[0]++;
+                if (inFlight.get() >= options.concurrency()) {
+                    if (intended >= recordFrom) {
+                        dropped.incrementAndGet();
+                    }
+                    continue;
+                }
+                int operation = workload.pick(ThreadLocalRandom.current());
+                inFlight.incrementAndGet();
+                workload.send(operation, client).onComplete(ar -> {
+                    inFlight.decrementAndGet();
+                    record(operation, intended, ar);
+                });
+            }
+
+            if (now >= stopAt && (inFlight.get() == 0 || now - stopAt > DRAIN_TIMEOUT_NANOS)) {
+                vertx.cancelTimer(timer);
+                finished.complete();
+            }
+        });
+    }
+
+    private void record(int operation, long start, AsyncResult<HttpResponse<Buffer>> result) {
+        if (start < recordFrom || start >= stopAt) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        if (result.succeeded()) {
+            int status = result.result().statusCode();
+            stats[operation].record(latency, String.valueOf(status), status < 400);
+        } else {
+            stats[operation].record(latency, result.cause().getClass().getSimpleName(), false);
+        }
+    }
+}
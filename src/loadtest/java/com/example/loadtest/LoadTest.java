@@ -0,0 +1,184 @@
+package com.example.loadtest;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import com.example.MainVerticle;
+import com.example.metrics.AppMetrics;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+/**
+ * End-to-end load test: boots an embedded PostgreSQL and MainVerticle (unless
+ * target= points at a running server), replays the Workload mix and reports
+ * latency percentiles per operation. See LoadTestOptions for the options.
+ *
+ * The driver runs in the same JVM as the server by default, so numbers are
+ * for comparing builds on the same machine rather than capacity planning.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        PrintStream console = System.out;
+        console.println("Load test options: " + options);
+
+        EmbeddedDatabase database = null;
+        Vertx server = null;
+        Vertx driver = Vertx.vertx();
+        int exitCode = 0;
+        try {
+            String target = options.target();
+            if (target == null) {
+                database = EmbeddedDatabase.start(options);
+                server = Vertx.builder()
+                    .with(AppMetrics.vertxOptions())
+                    .withMetrics(AppMetrics.factory())
+                    .build();
+                int port = freePort();
+                await(server.deployVerticle(MainVerticle::new, new DeploymentOptions()
+                    .setConfig(serverConfig(database.getPort(), port))
+                    .setInstances(Runtime.getRuntime().availableProcessors())));
+                target = "http://localhost:" + port;
+            }
+
+            URI uri = URI.create(target);
+            WebClient client = WebClient.create(driver, new WebClientOptions()
+                .setDefaultHost(uri.getHost())
+                .setDefaultPort(uri.getPort())
+                .setMaxPoolSize(options.concurrency())
+                .setKeepAlive(true));
+
+            String token = salespersonToken(client);
+            Workload workload = new Workload(options.mix(), options, token);
+            LoadDriver load = new LoadDriver(driver, client, workload, options);
+
+            console.printf("Running %s model against %s: %ds warmup, %ds measured%n",
+                options.openModel() ? "open" : "closed", target, options.warmupSeconds(), options.durationSeconds());
+
+            // The application logs every cart add and login; keep that out of the report
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                await(load.run());
+            } finally {
+                System.setOut(console);
+            }
+
+            report(console, load, options);
+        } catch (Exception e) {
+            System.setOut(console);
+            System.err.println("Load test failed: " + e);
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            await(driver.close());
+            if (server != null) {
+                await(server.close());
+            }
+            if (database != null) {
+                database.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static void report(PrintStream out, LoadDriver load, LoadTestOptions options) throws Exception {
+        double seconds = options.durationSeconds();
+        Path dir = Path.of(options.output());
+        Files.createDirectories(dir);
+
+        Histogram total = new Histogram(TimeUnit.MINUTES.toMicros(2), 3);
+        JsonObject routes = new JsonObject();
+
+        out.println();
+        out.printf("%-10s %9s %9s %7s %9s %9s %9s %9s %9s%n",
+            "operation", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (RouteStats stats : load.getStats()) {
+            JsonObject summary = stats.summary(seconds);
+            routes.put(stats.getName(), summary);
+            stats.addTo(total);
+            stats.writeHgrm(dir);
+            printRow(out, stats.getName(), summary);
+        }
+
+        JsonObject all = RouteStats.summarize(total, seconds);
+        long errors = 0;
+        for (RouteStats stats : load.getStats()) {
+            errors += stats.getErrors();
+        }
+        all.put("errors", errors).put("dropped", load.getDropped());
+        printRow(out, "ALL", all);
+        RouteStats.writeHgrm(total, dir.resolve("all.hgrm"));
+
+        if (load.getDropped() > 0) {
+            out.printf("%d arrivals dropped at the in-flight cap of %d%n", load.getDropped(), options.concurrency());
+        }
+
+        JsonObject summary = new JsonObject()
+            .put("options", options.toString())
+            .put("all", all)
+            .put("operations", routes);
+        Files.writeString(dir.resolve("summary.json"), summary.encodePrettily());
+        out.println("Histograms and summary.json written to " + dir.toAbsolutePath());
+    }
+
+    private static void printRow(PrintStream out, String name, JsonObject summary) {
+        out.printf("%-10s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+            name,
+            summary.getLong("requests"),
+            summary.getDouble("requestsPerSecond"),
+            summary.getLong("errors"),
+            summary.getDouble("p50Millis"),
+            summary.getDouble("p90Millis"),
+            summary.getDouble("p99Millis"),
+            summary.getDouble("p999Millis"),
+            summary.getDouble("maxMillis"));
+    }
+
+    // Application config with the database and HTTP port pointed at this run
+    private static JsonObject serverConfig(int databasePort, int httpPort) throws Exception {
+        JsonObject config;
+        try (InputStream in = LoadTest.class.getClassLoader().getResourceAsStream("conf/config.json")) {
+            config = in != null ? new JsonObject(new String(in.readAllBytes(), StandardCharsets.UTF_8)) : new JsonObject();
+        }
+        JsonObject http = config.getJsonObject("http", new JsonObject()).put("port", httpPort);
+        JsonObject db = config.getJsonObject("database", new JsonObject());
+        db.put("host", "localhost")
+            .put("port", databasePort)
+            .put("database", EmbeddedDatabase.DATABASE)
+            .put("user", EmbeddedDatabase.USER)
+            .put("password", EmbeddedDatabase.PASSWORD)
+            .put("benchmarkQueries", 0);
+        return config.put("http", http).put("database", db);
+    }
+
+    // Built-in admin account; its token is used for the salesperson-only routes
+    private static String salespersonToken(WebClient client) throws Exception {
+        JsonObject login = new JsonObject().put("username", "kulani").put("password", "123");
+        return await(client.post("/api/login").sendJsonObject(login)).bodyAsJsonObject().getString("token");
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(2, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * key=value command line options.
+ *
+ *   target=http://host:port  run against a running server instead of booting one
+ *   model=closed|open        closed: fixed users looping back to back; open: fixed arrival rate
+ *   concurrency=32           closed model users, open model cap on requests in flight
+ *   rate=200                 open model requests per second
+ *   warmup=10                seconds of load before recording starts
+ *   duration=30              seconds of recorded load
+ *   mix=browse:40,login:10   operation weights, see Workload
+ *   products=1000 customers=1000 users=50   seed sizes for the embedded database
+ *   hotProducts=5            products every checkout orders from, seeded with unlimited stock
+ *   output=target/loadtest   directory for .hgrm histograms and summary.json
+ */
+public class LoadTestOptions {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    public String target() { return values.get("target"); }
+    public boolean openModel() { return "open".equals(values.getOrDefault("model", "closed")); }
+    public int concurrency() { return intValue("concurrency", 32); }
+    public int rate() { return intValue("rate", 200); }
+    public int warmupSeconds() { return intValue("warmup", 10); }
+    public int durationSeconds() { return intValue("duration", 30); }
+    public String mix() { return values.getOrDefault("mix", Workload.DEFAULT_MIX); }
+    public int products() { return intValue("products", 1000); }
+    public int customers() { return intValue("customers", 1000); }
+    public int users() { return intValue("users", 50); }
+    public int hotProducts() { return intValue("hotProducts", 5); }
+    public String output() { return values.getOrDefault("output", "target/loadtest"); }
+
+    private int intValue(String key, int defaultValue) {
+        String value = values.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
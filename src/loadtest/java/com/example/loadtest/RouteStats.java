@@ -0,0 +1,88 @@
+package com.example.loadtest;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Latency histogram (microseconds) and status counts for one operation.
+ */
+public class RouteStats {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final String name;
+    private final Histogram histogram = new Histogram(MAX_TRACKABLE_MICROS, 3);
+    private final Map<String, Integer> statuses = new TreeMap<>();
+    private long errors;
+
+    public RouteStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // status is the HTTP status code, or the exception class name when no response arrived
+    public synchronized void record(long latencyNanos, String status, boolean success) {
+        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_TRACKABLE_MICROS));
+        statuses.merge(status, 1, Integer::sum);
+        if (!success) {
+            errors++;
+        }
+    }
+
+    public synchronized void addTo(Histogram total) {
+        total.add(histogram);
+    }
+
+    public synchronized long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    public synchronized JsonObject summary(double seconds) {
+        JsonObject summary = summarize(histogram, seconds).put("errors", errors);
+        JsonObject byStatus = new JsonObject();
+        statuses.forEach(byStatus::put);
+        return summary.put("statuses", byStatus);
+    }
+
+    public synchronized void writeHgrm(Path dir) throws IOException {
+        writeHgrm(histogram, dir.resolve(name + ".hgrm"));
+    }
+
+    public static JsonObject summarize(Histogram histogram, double seconds) {
+        return new JsonObject()
+            .put("requests", histogram.getTotalCount())
+            .put("requestsPerSecond", histogram.getTotalCount() / seconds)
+            .put("p50Millis", millis(histogram.getValueAtPercentile(50)))
+            .put("p90Millis", millis(histogram.getValueAtPercentile(90)))
+            .put("p99Millis", millis(histogram.getValueAtPercentile(99)))
+            .put("p999Millis", millis(histogram.getValueAtPercentile(99.9)))
+            .put("maxMillis", millis(histogram.getMaxValue()));
+    }
+
+    // Percentile distribution in the format HdrHistogram's plotter reads
+    public static void writeHgrm(Histogram histogram, Path file) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+
+/**
+ * Weighted mix of the requests a storefront and back office generate.
+ *
+ *   browse     GET  /api/products/public (first page)
+ *   filter     GET  /api/products/public?limit=20&inStock=true&minPrice=..
+ *   owned      GET  /api/products?limit=50 as a salesperson
+ *   addToCart  POST /api/cart
+ *   viewCart   GET  /api/cart/:customerId
+ *   login      POST /api/login as a customer (BCrypt verification)
+ *   users      GET  /api/users
+ *   userSearch GET  /api/users/search?q=.. (not in the default mix)
+ *   checkout   POST /api/cart/batch with two of the hot products, then
+ *              POST /api/orders/checkout (not in the default mix); run it
+ *              alone (mix=checkout:1) and req/s is orders per second with
+ *              every order contending for the same few product rows
+ */
+public class Workload {
+
+    public static final String DEFAULT_MIX = "browse:40,filter:15,owned:5,addToCart:15,viewCart:10,login:10,users:5";
+
+    private final List<String> names = new ArrayList<>();
+    private final List<BiFunction<WebClient, ThreadLocalRandom, Future<HttpResponse<Buffer>>>> operations = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    public Workload(String mix, LoadTestOptions options, String salespersonToken) {
+        int products = options.products();
+        int customers = options.customers();
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            String name = parts[0];
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+
+            BiFunction<WebClient, ThreadLocalRandom, Future<HttpResponse<Buffer>>> operation;
+            switch (name) {
+                case "browse":
+                    operation = (client, random) -> client.get("/api/products/public").send();
+                    break;
+                case "filter":
+                    operation = (client, random) -> client.get("/api/products/public")
+                        .addQueryParam("limit", "20")
+                        .addQueryParam("inStock", "true")
+                        .addQueryParam("minPrice", String.valueOf(random.nextInt(400)))
+                        .send();
+                    break;
+                case "owned":
+                    operation = (client, random) -> client.get("/api/products")
+                        .addQueryParam("limit", "50")
+                        .bearerTokenAuthentication(salespersonToken)
+                        .send();
+                    break;
+                case "addToCart":
+                    operation = (client, random) -> client.post("/api/cart")
+                        .sendJsonObject(new JsonObject()
+                            .put("customerId", 1 + random.nextInt(customers))
+                            .put("productId", 1 + random.nextInt(products))
+                            .put("quantity", 1));
+                    break;
+                case "viewCart":
+                    operation = (client, random) -> client.get("/api/cart/" + (1 + random.nextInt(customers))).send();
+                    break;
+                case "login":
+                    operation = (client, random) -> client.post("/api/login")
+                        .sendJsonObject(new JsonObject()
+                            .put("username", "customer" + (1 + random.nextInt(customers)) + "@example.com")
+                            .put("password", EmbeddedDatabase.SEED_PASSWORD));
+                    break;
+                case "users":
+                    operation = (client, random) -> client.get("/api/users").send();
+                    break;
+                case "userSearch":
+                    // Short prefixes like an admin typing into the search box
+                    operation = (client, random) -> client.get("/api/users/search")
+                        .addQueryParam("q", "user" + (1 + random.nextInt(Math.max(1, options.users() / 100))))
+                        .send();
+                    break;
+                case "checkout":
+                    int hot = Math.max(2, options.hotProducts());
+                    operation = (client, random) -> {
+                        int customerId = 1 + random.nextInt(customers);
+                        int first = 1 + random.nextInt(hot);
+                        int second = 1 + (first + random.nextInt(hot - 1)) % hot;
+                        return client.post("/api/cart/batch")
+                            .sendJson(new JsonArray()
+                                .add(new JsonObject().put("customerId", customerId).put("productId", first).put("quantity", 1))
+                                .add(new JsonObject().put("customerId", customerId).put("productId", second).put("quantity", 1)))
+                            .compose(added -> client.post("/api/orders/checkout")
+                                .sendJsonObject(new JsonObject().put("customerId", customerId)));
+                    };
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation in mix: " + name);
+            }
+
+            if (weight > 0) {
+                totalWeight += weight;
+                names.add(name);
+                operations.add(operation);
+                cumulativeWeights.add(totalWeight);
+            }
+        }
+
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("Empty mix: " + mix);
+        }
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    public int pick(ThreadLocalRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.size(); i++) {
+            if (roll < cumulativeWeights.get(i)) {
+                return i;
+            }
+        }
+        return cumulativeWeights.size() - 1;
+    }
+
+    public String name(int operation) {
+        return names.get(operation);
+    }
+
+    public Future<HttpResponse<Buffer>> send(int operation, WebClient client) {
+        return operations.get(operation).apply(client, ThreadLocalRandom.current());
+    }
+}
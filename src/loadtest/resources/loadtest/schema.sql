@@ -0,0 +1,46 @@
+-- Base tables the application expects; db/migrations/*.sql are applied on top.
+CREATE TABLE roles (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(50) NOT NULL
+);
+
+CREATE TABLE users (
+    id SERIAL PRIMARY KEY,
+    username VARCHAR(100) NOT NULL,
+    password_hash VARCHAR(100) NOT NULL,
+    role_id INT REFERENCES roles (id),
+    full_name VARCHAR(200),
+    email VARCHAR(200)
+);
+
+CREATE TABLE customers (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(200),
+    email VARCHAR(200),
+    phone VARCHAR(50),
+    address TEXT,
+    portal_access BOOLEAN DEFAULT FALSE,
+    password VARCHAR(100)
+);
+
+CREATE TABLE products (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(200) NOT NULL,
+    description TEXT,
+    price NUMERIC(10, 2),
+    stock INT,
+    image_url TEXT,
+    salesperson_id INT
+);
+
+CREATE TABLE cart (
+    id SERIAL PRIMARY KEY,
+    customer_id INT NOT NULL,
+    product_id INT NOT NULL,
+    quantity INT NOT NULL DEFAULT 1,
+    name VARCHAR(200),
+    price NUMERIC(10, 2),
+    image_url TEXT
+);
+
+INSERT INTO roles (name) VALUES ('SALESPERSON'), ('ACCOUNTANT');
@@ -1,10 +1,96 @@
 package com.example;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.example.config.DatabaseConfig;
+import com.example.metrics.AppMetrics;
+import com.example.service.WriteBehindCartStore;
+
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
 
 public class Launcher {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
     public static void main(String[] args) {
-        Vertx vertx = Vertx.vertx();
-        vertx.deployVerticle(new MainVerticle());
+        Vertx vertx = Vertx.builder()
+            .with(AppMetrics.vertxOptions())
+            .withMetrics(AppMetrics.factory())
+            .build();
+
+        // On SIGTERM/Ctrl+C persist write-behind carts before Vert.x shuts down
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            CountDownLatch closed = new CountDownLatch(1);
+            WriteBehindCartStore.flushShared(vertx)
+                .onFailure(err -> System.err.println("Final cart flush failed: " + err.getMessage()))
+                .onComplete(flushed -> vertx.close().onComplete(done -> closed.countDown()));
+            try {
+                closed.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        ConfigRetriever.create(vertx, configOptions()).getConfig()
+            .compose(config -> {
+                // One MainVerticle per core by default; each gets its own event loop and router
+                int instances = config.getInteger("instances", 0);
+                if (instances <= 0) {
+                    instances = Runtime.getRuntime().availableProcessors();
+                }
+
+                int deployed = instances;
+                DeploymentOptions options = new DeploymentOptions()
+                    .setConfig(config)
+                    .setInstances(instances);
+
+                return vertx.deployVerticle(MainVerticle::new, options)
+                    .onSuccess(id -> {
+                        System.out.println("✅ Deployed " + deployed + " MainVerticle instance(s)");
+                        runPoolBenchmark(vertx, config);
+                    });
+            })
+            .onFailure(err -> {
+                System.err.println("Failed to start: " + err.getMessage());
+                err.printStackTrace();
+                vertx.close();
+            });
+    }
+
+    // Report database round-trip latency once at startup to help size the pool
+    private static void runPoolBenchmark(Vertx vertx, JsonObject config) {
+        int queries = config.getJsonObject("database", new JsonObject()).getInteger("benchmarkQueries", 0);
+        if (queries <= 0) {
+            return;
+        }
+
+        PgPool client = DatabaseConfig.getPgClient(vertx, config);
+        DatabaseConfig.selfBenchmark(client, queries)
+            .onSuccess(report -> System.out.println("Database pool benchmark: " + report.encode()))
+            .onFailure(err -> System.err.println("Database pool benchmark failed: " + err.getMessage()))
+            .onComplete(done -> client.close());
+    }
+
+    // conf/config.json (file system or classpath), overridable with -Dsection.key=value
+    private static ConfigRetrieverOptions configOptions() {
+        ConfigStoreOptions file = new ConfigStoreOptions()
+            .setType("file")
+            .setOptional(true)
+            .setConfig(new JsonObject().put("path", System.getProperty("config.path", "conf/config.json")));
+
+        ConfigStoreOptions sys = new ConfigStoreOptions()
+            .setType("sys")
+            .setConfig(new JsonObject().put("hierarchical", true));
+
+        return new ConfigRetrieverOptions()
+            .addStore(file)
+            .addStore(sys);
     }
 }
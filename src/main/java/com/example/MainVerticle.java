@@ -3,35 +3,75 @@ package com.example;
 import java.util.Set;
 
 import com.example.config.DatabaseConfig;
+import com.example.config.ServerConfig;
+import com.example.controller.AdminController;
 import com.example.controller.AuthController;
 import com.example.controller.CartController;
 import com.example.controller.CustomerController;
+import com.example.controller.InventoryController;
+import com.example.controller.MetricsController;
+import com.example.controller.OrderController;
 import com.example.controller.ProductController;
 import com.example.controller.RoleController;
 import com.example.controller.UserController;
+import com.example.metrics.BlockingDetector;
+import com.example.metrics.DbPoolProbe;
+import com.example.metrics.EventLoopLagProbe;
+import com.example.metrics.MetricsRegistry;
+import com.example.middleware.BodyPolicy;
+import com.example.middleware.CompressionPolicy;
 import com.example.service.AuthService;
 import com.example.service.CartService;
 import com.example.service.CustomerService;
+import com.example.service.InventoryReservations;
+import com.example.service.OrderService;
+import com.example.service.PasswordService;
+import com.example.service.ProductCatalogCache;
 import com.example.service.ProductService;
+import com.example.service.RoleRegistry;
 import com.example.service.RoleService;
+import com.example.service.UserSearchIndex;
+import com.example.service.WriteBehindCartStore;
+import com.example.util.EntityVersions;
+import com.example.util.PgNotificationListener;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.CorsHandler;
 import io.vertx.pgclient.PgPool;
 
 public class MainVerticle extends AbstractVerticle {
 
+    private PgNotificationListener notifications;
+
     @Override
     public void start(Promise<Void> startPromise) {
-        // Initialize database connection
-        PgPool client = DatabaseConfig.getPgClient(vertx);
+        // Initialize database connection (pool is shared across verticle instances)
+        PgPool client = DatabaseConfig.getPgClient(vertx, config());
+
+        // Metrics are process-wide; the lag probe watches this instance's event loop
+        MetricsRegistry metrics = MetricsRegistry.get(vertx);
+        EventLoopLagProbe.start(vertx, metrics);
+        DbPoolProbe.shared(vertx, client, DatabaseConfig.getMaxPoolSize(config()), metrics);
+        JsonObject blockingConfig = config().getJsonObject("blocking", new JsonObject());
+        BlockingDetector blockingDetector = blockingConfig.getBoolean("enabled", false)
+            ? BlockingDetector.shared(vertx, metrics, blockingConfig)
+            : null;
 
         // Main router
         Router router = Router.router(vertx);
 
+        // Times every handler chain on the event loop; keep it ahead of all other handlers
+        if (blockingDetector != null) {
+            router.route().handler(blockingDetector.handler());
+        }
+
         // Global CORS handler
         router.route().handler(
             CorsHandler.create("*")
@@ -39,52 +79,113 @@ public class MainVerticle extends AbstractVerticle {
                     HttpMethod.GET,
                     HttpMethod.POST,
                     HttpMethod.PUT,
+                    HttpMethod.PATCH,
                     HttpMethod.DELETE,
                     HttpMethod.OPTIONS
                 ))
                 .allowedHeaders(Set.of(
                     "Content-Type",
                     "Authorization",
+                    "If-None-Match",
                     "Access-Control-Allow-Credentials"
                 ))
+                .exposedHeaders(Set.of("X-Next-Cursor", "X-Cart-Total", "ETag"))
                 .allowCredentials(true)
         );
 
         // Pre-flight OPTIONS request handler
         router.options().handler(ctx -> ctx.response().setStatusCode(204).end());
 
+        // Request bodies are parsed once, here, and only for POST/PUT/PATCH
+        new BodyPolicy(config().getJsonObject("body", new JsonObject())).install(router);
+
+        // Small responses skip on-the-fly compression; pre-compressed ones choose their own encoding
+        if (ServerConfig.getHttpServerOptions(config()).isCompressionSupported()) {
+            new CompressionPolicy(ServerConfig.getCompressionThreshold(config())).install(router);
+        }
+
         // Initialize services
-        AuthService authService = new AuthService(client);
-        RoleService roleService = new RoleService();
-        CustomerService customerService = new CustomerService(client);
-        ProductService productService = new ProductService(client);
-        CartService cartService = new CartService(client);
+        PasswordService passwordService = PasswordService.shared(vertx, config().getJsonObject("password", new JsonObject()));
+        AuthService authService = new AuthService(client, passwordService);
+        CustomerService customerService = new CustomerService(client, passwordService, authService);
+        notifications = PgNotificationListener.shared(vertx, config());
+        EntityVersions versions = EntityVersions.shared(vertx, notifications);
+        ProductCatalogCache catalogCache = ProductCatalogCache.shared(vertx, client, notifications, versions);
+        RoleRegistry roleRegistry = RoleRegistry.shared(vertx, client, notifications, versions);
+        RoleService roleService = new RoleService(roleRegistry);
+        ProductService productService = new ProductService(client, catalogCache, versions);
+        JsonObject cartConfig = config().getJsonObject("cart", new JsonObject());
+        WriteBehindCartStore cartStore = cartConfig.getBoolean("writeBehind", false)
+            ? WriteBehindCartStore.shared(vertx, client, catalogCache, versions, metrics, cartConfig)
+            : null;
+        CartService cartService = new CartService(client, cartStore, versions);
+        OrderService orderService = new OrderService(client, cartStore, versions);
+        JsonObject inventoryConfig = config().getJsonObject("inventory", new JsonObject());
+        InventoryReservations inventory = inventoryConfig.getBoolean("enabled", false)
+            ? InventoryReservations.shared(vertx, client, inventoryConfig)
+            : null;
+        UserSearchIndex userSearchIndex = config().getJsonObject("users", new JsonObject()).getBoolean("prefixIndex", false)
+            ? UserSearchIndex.shared(vertx, client, notifications)
+            : null;
 
         // Mount controllers
-        new AuthController(vertx, router, authService, roleService);
+        new AuthController(vertx, router, authService, roleRegistry);
 
         CustomerController customerController = new CustomerController(vertx, customerService);
+        if (blockingDetector != null) {
+            blockingDetector.trackSubRouter(customerController.getRouter());
+        }
         router.mountSubRouter("/api/customers", customerController.getRouter());
 
-        new RoleController(vertx, router);
+        new RoleController(vertx, router, roleService);
 
-        UserController userController = new UserController(client);
+        UserController userController = new UserController(client, passwordService, roleRegistry, userSearchIndex, versions);
         userController.mountRoutes(router);
 
         ProductController productController = new ProductController(vertx, productService);
+        if (blockingDetector != null) {
+            blockingDetector.trackSubRouter(productController.getRouter());
+        }
         router.mountSubRouter("/api/products", productController.getRouter());
 
         // Mount CartController (it registers its own routes)
         new CartController(vertx, router, cartService);
+        new OrderController(vertx, router, orderService);
+        if (inventory != null) {
+            new InventoryController(router, inventory);
+        }
+
+        new AdminController(router, passwordService, blockingDetector);
 
-        // Start HTTP server
-        vertx.createHttpServer()
+        // Metrics are scraped from a separate listener, so the public port never exposes them
+        Router management = Router.router(vertx);
+        new MetricsController(management, metrics, passwordService);
+
+        // Start HTTP servers; instances listening on the same port share the load
+        Future<HttpServer> api = vertx.createHttpServer(ServerConfig.getHttpServerOptions(config()))
             .requestHandler(router)
-            .listen(8889)
-            .onSuccess(server -> {
-                System.out.println("✅ Server running at http://localhost:8889");
-                startPromise.complete();
-            })
+            .listen()
+            .onSuccess(server -> System.out.println("✅ Server running at http://localhost:" + server.actualPort()));
+        HttpServerOptions managementOptions = ServerConfig.getManagementServerOptions(config());
+        Future<HttpServer> scrape = vertx.createHttpServer(managementOptions)
+            .requestHandler(management)
+            .listen()
+            .onSuccess(server -> System.out.println("Metrics at http://" + managementOptions.getHost()
+                + ":" + server.actualPort() + "/metrics"));
+
+        Future.all(api, scrape)
+            .onSuccess(v -> startPromise.complete())
             .onFailure(startPromise::fail);
     }
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        if (notifications == null) {
+            stopPromise.complete();
+            return;
+        }
+        notifications.release()
+            .onFailure(err -> System.err.println("Failed to close notification listener: " + err.getMessage()))
+            .onComplete(ar -> stopPromise.complete());
+    }
 }
@@ -1,22 +1,124 @@
 package com.example.config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.PoolOptions;
 
 public class DatabaseConfig {
 
-    public static PgPool getPgClient(Vertx vertx) {
-        PgConnectOptions connectOptions = new PgConnectOptions()
-                .setPort(5432)
-                .setHost("localhost")
-                .setDatabase("sms")
-                .setUser("vertx_user")
-                .setPassword("12345");
+    public static final String POOL_NAME = "sms-pg-pool";
+
+    private static final String PING_QUERY = "SELECT 1";
+
+    // Connection settings from the "database" section of the application config
+    public static PgConnectOptions getConnectOptions(JsonObject config) {
+        JsonObject db = config.getJsonObject("database", new JsonObject());
+
+        return new PgConnectOptions()
+                .setPort(db.getInteger("port", 5432))
+                .setHost(db.getString("host", "localhost"))
+                .setDatabase(db.getString("database", "sms"))
+                .setUser(db.getString("user", "vertx_user"))
+                .setPassword(db.getString("password", "12345"))
+                .setCachePreparedStatements(db.getBoolean("cachePreparedStatements", true))
+                .setPreparedStatementCacheMaxSize(db.getInteger("preparedStatementCacheMaxSize", 256))
+                .setPipeliningLimit(db.getInteger("pipeliningLimit", PgConnectOptions.DEFAULT_PIPELINING_LIMIT));
+    }
+
+    // Build the pool from the "database" section of the application config
+    public static PgPool getPgClient(Vertx vertx, JsonObject config) {
+        JsonObject db = config.getJsonObject("database", new JsonObject());
+        PgConnectOptions connectOptions = getConnectOptions(config);
+
+        int maxSize = getMaxPoolSize(config);
 
-        PoolOptions poolOptions = new PoolOptions().setMaxSize(5);
+        // Shared: every MainVerticle instance gets the same pool instead of its own
+        PoolOptions poolOptions = new PoolOptions()
+                .setMaxSize(maxSize)
+                .setMaxWaitQueueSize(db.getInteger("maxWaitQueueSize", maxSize * 64))
+                .setIdleTimeout(db.getInteger("idleTimeoutSeconds", 300))
+                .setIdleTimeoutUnit(TimeUnit.SECONDS)
+                .setConnectionTimeout(db.getInteger("connectionTimeoutSeconds", 30))
+                .setConnectionTimeoutUnit(TimeUnit.SECONDS)
+                .setShared(db.getBoolean("shared", true))
+                .setName(db.getString("poolName", POOL_NAME));
 
         return PgPool.pool(vertx, connectOptions, poolOptions);
     }
+
+    // Without an explicit size, scale with the cores serving requests
+    public static int getMaxPoolSize(JsonObject config) {
+        JsonObject db = config.getJsonObject("database", new JsonObject());
+        return db.getInteger("maxSize", Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * Round-trip self benchmark: first a sequential run to measure single-query
+     * latency, then a burst of the same size to see how the pool copes with
+     * concurrency. Results are meant for logs, not for serving traffic.
+     */
+    public static Future<JsonObject> selfBenchmark(PgPool client, int queries) {
+        return sequentialPings(client, queries, new long[queries], 0)
+                .compose(sequential -> concurrentPings(client, queries)
+                        .map(concurrent -> new JsonObject()
+                                .put("queries", queries)
+                                .put("sequential", sequential)
+                                .put("concurrent", concurrent)));
+    }
+
+    private static Future<JsonObject> sequentialPings(PgPool client, int queries, long[] samples, int index) {
+        if (index == queries) {
+            return Future.succeededFuture(summarize(samples, 0));
+        }
+        long start = System.nanoTime();
+        return client.query(PING_QUERY).execute()
+                .compose(rows -> {
+                    samples[index] = System.nanoTime() - start;
+                    return sequentialPings(client, queries, samples, index + 1);
+                });
+    }
+
+    private static Future<JsonObject> concurrentPings(PgPool client, int queries) {
+        long[] samples = new long[queries];
+        List<Future<?>> pings = new ArrayList<>(queries);
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            int index = i;
+            pings.add(client.query(PING_QUERY).execute()
+                    .onSuccess(rows -> samples[index] = System.nanoTime() - start));
+        }
+        return Future.all(pings).map(done -> summarize(samples, System.nanoTime() - start));
+    }
+
+    private static JsonObject summarize(long[] samples, long wallNanos) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        double total = 0;
+        for (long sample : sorted) {
+            total += sample;
+        }
+        JsonObject summary = new JsonObject()
+                .put("minMillis", sorted[0] / 1_000_000.0)
+                .put("avgMillis", total / sorted.length / 1_000_000.0)
+                .put("p50Millis", percentile(sorted, 0.50) / 1_000_000.0)
+                .put("p99Millis", percentile(sorted, 0.99) / 1_000_000.0)
+                .put("maxMillis", sorted[sorted.length - 1] / 1_000_000.0);
+        if (wallNanos > 0) {
+            summary.put("queriesPerSecond", sorted.length / (wallNanos / 1_000_000_000.0));
+        }
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
 }
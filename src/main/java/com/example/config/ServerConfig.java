@@ -0,0 +1,39 @@
+package com.example.config;
+
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+
+public class ServerConfig {
+
+    public static final int DEFAULT_PORT = 8889;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    public static final int DEFAULT_MANAGEMENT_PORT = 9100;
+    public static final String DEFAULT_MANAGEMENT_HOST = "127.0.0.1";
+
+    // Build HTTP server options from the "http" section of the application config
+    public static HttpServerOptions getHttpServerOptions(JsonObject config) {
+        JsonObject http = config.getJsonObject("http", new JsonObject());
+
+        return new HttpServerOptions()
+                .setPort(http.getInteger("port", DEFAULT_PORT))
+                .setTcpNoDelay(http.getBoolean("tcpNoDelay", true))
+                .setTcpFastOpen(http.getBoolean("tcpFastOpen", false))
+                .setCompressionSupported(http.getBoolean("compressionSupported", false))
+                .setIdleTimeout(http.getInteger("idleTimeoutSeconds", 0))
+                .setAcceptBacklog(http.getInteger("acceptBacklog", -1));
+    }
+
+    // Listener for /metrics from the "management" section; loopback only unless host says otherwise
+    public static HttpServerOptions getManagementServerOptions(JsonObject config) {
+        JsonObject management = config.getJsonObject("management", new JsonObject());
+
+        return new HttpServerOptions()
+                .setPort(management.getInteger("port", DEFAULT_MANAGEMENT_PORT))
+                .setHost(management.getString("host", DEFAULT_MANAGEMENT_HOST));
+    }
+
+    // Smallest body compressed on the fly; only applies with compressionSupported
+    public static int getCompressionThreshold(JsonObject config) {
+        return config.getJsonObject("http", new JsonObject()).getInteger("compressionThreshold", DEFAULT_COMPRESSION_THRESHOLD);
+    }
+}
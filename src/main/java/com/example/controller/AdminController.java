@@ -0,0 +1,66 @@
+package com.example.controller;
+
+import com.example.metrics.BlockingDetector;
+import com.example.middleware.JwtAuthHandler;
+import com.example.service.PasswordService;
+
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+public class AdminController {
+
+    private static final String ADMIN_ROLE = "admin";
+    private static final int DEFAULT_OFFENDERS = 20;
+
+    private final PasswordService passwordService;
+    private final BlockingDetector blockingDetector;
+
+    // blockingDetector is null unless blocking.enabled is set; its routes are left out then
+    public AdminController(Router router, PasswordService passwordService, BlockingDetector blockingDetector) {
+        this.passwordService = passwordService;
+        this.blockingDetector = blockingDetector;
+
+        // Reports expose stack traces and internals, so every admin route needs an admin token
+        router.route("/api/admin/*")
+            .handler(JwtAuthHandler::handle)
+            .handler(JwtAuthHandler.requireRole(ADMIN_ROLE));
+
+        router.get("/api/admin/password-hasher").handler(this::handlePasswordHasherMetrics);
+        router.get("/api/admin/token-cache").handler(this::handleTokenCacheMetrics);
+        if (blockingDetector != null) {
+            router.get("/api/admin/blocking").handler(this::handleBlockingReport);
+            router.delete("/api/admin/blocking").handler(this::handleBlockingReset);
+        }
+    }
+
+    private void handlePasswordHasherMetrics(RoutingContext ctx) {
+        ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(passwordService.metrics().encode());
+    }
+
+    private void handleTokenCacheMetrics(RoutingContext ctx) {
+        ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(JwtAuthHandler.cacheStats().encode());
+    }
+
+    // ?limit=N caps the number of offenders returned
+    private void handleBlockingReport(RoutingContext ctx) {
+        int limit;
+        try {
+            limit = Integer.parseInt(ctx.request().getParam("limit", String.valueOf(DEFAULT_OFFENDERS)));
+        } catch (NumberFormatException e) {
+            ctx.response().setStatusCode(400).end("Invalid limit");
+            return;
+        }
+        ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(blockingDetector.report(Math.max(1, limit)).encode());
+    }
+
+    private void handleBlockingReset(RoutingContext ctx) {
+        blockingDetector.reset();
+        ctx.response().setStatusCode(204).end();
+    }
+}
@@ -1,24 +1,26 @@
 package com.example.controller;
 
+import com.example.model.Customer;
+import com.example.model.LoginAccount;
+import com.example.model.User;
 import com.example.service.AuthService;
-import com.example.service.RoleService;
+import com.example.service.PasswordService;
+import com.example.service.RoleRegistry;
 import com.example.util.JwtUtil;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 
 public class AuthController {
 
     private final AuthService authService;
-    private final RoleService roleService;
+    private final RoleRegistry roleRegistry;
 
-    public AuthController(Vertx vertx, Router router, AuthService authService, RoleService roleService) {
+    public AuthController(Vertx vertx, Router router, AuthService authService, RoleRegistry roleRegistry) {
         this.authService = authService;
-        this.roleService = roleService;
+        this.roleRegistry = roleRegistry;
 
-        router.route().handler(BodyHandler.create());
         router.post("/api/login").handler(this::handleLogin);
     }
 
@@ -45,68 +47,73 @@ public class AuthController {
             return;
         }
 
-        // 2️⃣ Check system users
-        authService.getUserByUsername(username).onSuccess(user -> {
-            if (user != null) {
-                boolean passwordMatches = authService.checkPassword(password, user.getPasswordHash());
-                if (!passwordMatches) {
-                    ctx.response().setStatusCode(401).end("Invalid credentials");
-                    return;
-                }
-
-                roleService.getRoles().onSuccess(roles -> {
-                    String roleName = roles.stream()
-                        .filter(role -> role.getInteger("id") == user.getRoleId())
-                        .map(role -> role.getString("name").toLowerCase())
-                        .findFirst()
-                        .orElse("unknown");
-
-                    String token = JwtUtil.generateToken(user.getId(), user.getUsername(), roleName);
-
-                    JsonObject response = new JsonObject()
-                        .put("message", "User login successful")
-                        .put("username", user.getUsername())
-                        .put("role", roleName)
-                        .put("token", token);
-
-                    ctx.response()
-                       .putHeader("Content-Type", "application/json")
-                       .end(response.encode());
-                }).onFailure(err -> ctx.response().setStatusCode(500).end("Failed to load role"));
+        // 2️⃣ System user or customer, resolved in one query (users take precedence)
+        authService.findAccounts(username).onSuccess(accounts -> {
+            if (accounts.isEmpty()) {
+                ctx.response().setStatusCode(401).end("Invalid credentials");
                 return;
             }
 
-            // 3️⃣ Check customer login
-            authService.getCustomerByEmail(username).onSuccess(customer -> {
-                if (customer == null) {
+            LoginAccount account = accounts.get(0);
+            authService.checkPassword(password, account.getPasswordHash()).onSuccess(passwordMatches -> {
+                if (!passwordMatches) {
                     ctx.response().setStatusCode(401).end("Invalid credentials");
                     return;
                 }
 
-                boolean passwordMatches = authService.checkPassword(password, customer.getPassword());
-                if (!passwordMatches) {
-                    ctx.response().setStatusCode(401).end("Invalid credentials");
-                    return;
+                if (account.isCustomer()) {
+                    respondCustomer(ctx, account.getCustomer());
+                } else {
+                    respondUser(ctx, account.getUser());
                 }
+            }).onFailure(err -> handleLoginFailure(ctx, err));
+        }).onFailure(err -> {
+            ctx.response().setStatusCode(500).end("Login failed: " + err.getMessage());
+        });
+    }
+
+    private void respondUser(RoutingContext ctx, User user) {
+        roleRegistry.ready().onSuccess(roles -> {
+            String name = roles.name(user.getRoleId());
+            String roleName = name != null ? name.toLowerCase() : "unknown";
+
+            String token = JwtUtil.generateToken(user.getId(), user.getUsername(), roleName);
 
-                String token = JwtUtil.generateToken(customer.getId(), customer.getEmail(), "customer");
+            JsonObject response = new JsonObject()
+                .put("message", "User login successful")
+                .put("username", user.getUsername())
+                .put("role", roleName)
+                .put("token", token);
 
-                JsonObject response = new JsonObject()
-                    .put("message", "Customer login successful")
-                    .put("username", customer.getEmail())
-                    .put("role", "customer")
-                    .put("token", token)
-                    .put("customerId", customer.getId()); // ✅ Important: include customerId
+            ctx.response()
+               .putHeader("Content-Type", "application/json")
+               .end(response.encode());
+        }).onFailure(err -> ctx.response().setStatusCode(500).end("Failed to load role"));
+    }
 
-                ctx.response()
-                   .putHeader("Content-Type", "application/json")
-                   .end(response.encode());
-            }).onFailure(err -> {
-                ctx.response().setStatusCode(500).end("Login failed: " + err.getMessage());
-            });
+    private void respondCustomer(RoutingContext ctx, Customer customer) {
+        String token = JwtUtil.generateToken(customer.getId(), customer.getEmail(), "customer");
 
-        }).onFailure(err -> {
-            ctx.response().setStatusCode(500).end("Login failed: " + err.getMessage());
-        });
+        JsonObject response = new JsonObject()
+            .put("message", "Customer login successful")
+            .put("username", customer.getEmail())
+            .put("role", "customer")
+            .put("token", token)
+            .put("customerId", customer.getId()); // ✅ Important: include customerId
+
+        ctx.response()
+           .putHeader("Content-Type", "application/json")
+           .end(response.encode());
+    }
+
+    private void handleLoginFailure(RoutingContext ctx, Throwable err) {
+        if (PasswordService.isBusy(err)) {
+            ctx.response()
+               .setStatusCode(503)
+               .putHeader("Retry-After", "1")
+               .end(err.getMessage());
+            return;
+        }
+        ctx.response().setStatusCode(500).end("Login failed: " + err.getMessage());
     }
 }
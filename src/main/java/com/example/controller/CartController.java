@@ -1,13 +1,17 @@
 package com.example.controller;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.example.model.Cart;
 import com.example.service.CartService;
+import com.example.util.EntityVersions;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 
 public class CartController {
 
@@ -16,9 +20,8 @@ public class CartController {
     public CartController(Vertx vertx, Router router, CartService cartService) {
         this.cartService = cartService;
 
-        router.route().handler(BodyHandler.create());
-
         router.post("/api/cart").handler(this::addToCart);
+        router.post("/api/cart/batch").handler(this::addManyToCart);
         router.get("/api/cart/:customerId").handler(this::getCart);
         router.put("/api/cart/:id").handler(this::updateCart);
         router.delete("/api/cart/:id").handler(this::deleteCart);
@@ -40,10 +43,14 @@ public class CartController {
             }
 
             cartService.addCartItem(cart)
-                .onSuccess(v -> ctx.response()
+                .onSuccess(line -> ctx.response()
                     .setStatusCode(201)
                     .putHeader("Content-Type", "application/json")
-                    .end(new JsonObject().put("message", "Added to cart").encode()))
+                    .end(new JsonObject()
+                        .put("message", "Added to cart")
+                        .put("id", line.getId())
+                        .put("quantity", line.getQuantity())
+                        .encode()))
                 .onFailure(err -> {
                     System.err.println("Failed to add item: " + err.getMessage());
                     err.printStackTrace();
@@ -66,14 +73,77 @@ public class CartController {
         }
     }
 
+    // Body: JSON array of cart items, each shaped like the POST /api/cart body
+    private void addManyToCart(RoutingContext ctx) {
+        try {
+            JsonArray json = ctx.body().asJsonArray();
+            if (json == null || json.isEmpty()) {
+                ctx.response()
+                    .setStatusCode(400)
+                    .end("Request body must be a non-empty JSON array of cart items");
+                return;
+            }
+
+            List<Cart> items = new ArrayList<>(json.size());
+            for (int i = 0; i < json.size(); i++) {
+                Cart cart = json.getJsonObject(i).mapTo(Cart.class);
+                if (cart.getCustomerId() == null || cart.getProductId() == null) {
+                    ctx.response()
+                        .setStatusCode(400)
+                        .end("Missing required fields: customerId and productId are required");
+                    return;
+                }
+                items.add(cart);
+            }
+
+            cartService.addCartItems(items)
+                .onSuccess(lines -> {
+                    JsonArray added = new JsonArray();
+                    for (Cart line : lines) {
+                        added.add(new JsonObject()
+                            .put("id", line.getId())
+                            .put("productId", line.getProductId())
+                            .put("quantity", line.getQuantity()));
+                    }
+                    ctx.response()
+                        .setStatusCode(201)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("message", "Added to cart").put("items", added).encode());
+                })
+                .onFailure(err -> {
+                    System.err.println("Failed to add items: " + err.getMessage());
+                    err.printStackTrace();
+                    ctx.response()
+                        .setStatusCode(500)
+                        .end(new JsonObject()
+                            .put("error", "Failed to add items to cart")
+                            .put("details", err.getMessage())
+                            .encode());
+                });
+        } catch (Exception e) {
+            System.err.println("Error parsing cart items: " + e.getMessage());
+            ctx.response()
+                .setStatusCode(400)
+                .end(new JsonObject()
+                    .put("error", "Invalid cart data")
+                    .put("details", e.getMessage())
+                    .encode());
+        }
+    }
+
     private void getCart(RoutingContext ctx) {
         try {
             Integer customerId = Integer.valueOf(ctx.pathParam("customerId"));
 
-            cartService.getCartByCustomerId(customerId)
-                .onSuccess(list -> ctx.response()
+            String etag = cartService.cartTag(customerId);
+            if (EntityVersions.notModified(ctx, etag)) return;
+
+            cartService.getCartJson(customerId)
+                .onSuccess(cart -> ctx.response()
                     .putHeader("Content-Type", "application/json")
-                    .end(io.vertx.core.json.Json.encodePrettily(list)))
+                    .putHeader("ETag", etag)
+                    .putHeader("X-Cart-Total", cart.getTotal().toPlainString())
+                    .end(cart.getItems()))
                 .onFailure(err -> {
                     System.err.println("Failed to fetch cart: " + err.getMessage());
                     err.printStackTrace();
@@ -110,10 +180,19 @@ public class CartController {
             Integer quantity = json.getInteger("quantity");
 
             cartService.updateCartItem(id, quantity)
-                .onSuccess(v -> ctx.response()
-                    .setStatusCode(200)
-                    .putHeader("Content-Type", "application/json")
-                    .end(new JsonObject().put("message", "Cart updated").encode()))
+                .onSuccess(found -> {
+                    if (!found) {
+                        ctx.response()
+                            .setStatusCode(404)
+                            .putHeader("Content-Type", "application/json")
+                            .end(new JsonObject().put("error", "Cart item not found").encode());
+                        return;
+                    }
+                    ctx.response()
+                        .setStatusCode(200)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("message", "Cart updated").encode());
+                })
                 .onFailure(err -> {
                     System.err.println("Failed to update cart: " + err.getMessage());
                     err.printStackTrace();
@@ -138,10 +217,19 @@ public class CartController {
             Integer id = Integer.valueOf(ctx.pathParam("id"));
 
             cartService.deleteCartItem(id)
-                .onSuccess(v -> ctx.response()
-                    .setStatusCode(200)
-                    .putHeader("Content-Type", "application/json")
-                    .end(new JsonObject().put("message", "Cart item deleted").encode()))
+                .onSuccess(found -> {
+                    if (!found) {
+                        ctx.response()
+                            .setStatusCode(404)
+                            .putHeader("Content-Type", "application/json")
+                            .end(new JsonObject().put("error", "Cart item not found").encode());
+                        return;
+                    }
+                    ctx.response()
+                        .setStatusCode(200)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("message", "Cart item deleted").encode());
+                })
                 .onFailure(err -> {
                     System.err.println("Failed to delete cart item: " + err.getMessage());
                     err.printStackTrace();
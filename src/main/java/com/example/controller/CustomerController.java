@@ -2,11 +2,11 @@ package com.example.controller;
 
 import com.example.model.Customer;
 import com.example.service.CustomerService;
+import com.example.service.PasswordService;
 
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 
 public class CustomerController {
 
@@ -17,12 +17,10 @@ public class CustomerController {
         this.customerService = customerService;
         this.router = Router.router(vertx);
 
-        // Parse JSON bodies
-        router.route().handler(BodyHandler.create());
-
         // Routes (mounted at /api/customers)
         router.post("/").handler(this::handleRegister);
         router.get("/").handler(this::handleGetAll);
+        router.get("/export").handler(customerService::exportCustomers);
         router.put("/:id").handler(this::handleUpdate);
         router.delete("/:id").handler(this::handleDelete);
         router.post("/login").handler(this::handleLogin);
@@ -52,6 +50,10 @@ public class CustomerController {
         customerService.registerCustomer(c, plainPassword)
                 .onSuccess(v -> ctx.response().setStatusCode(201).end("Customer registered"))
                 .onFailure(err -> {
+                    if (PasswordService.isBusy(err)) {
+                        ctx.response().setStatusCode(503).putHeader("Retry-After", "1").end(err.getMessage());
+                        return;
+                    }
                     err.printStackTrace(); // Logs exact error
                     ctx.response().setStatusCode(500).end(err.getMessage());
                 });
@@ -102,6 +104,12 @@ public class CustomerController {
 
         customerService.login(email, password)
                 .onSuccess(customer -> ctx.json(customer))
-                .onFailure(err -> ctx.response().setStatusCode(401).end(err.getMessage()));
+                .onFailure(err -> {
+                    if (PasswordService.isBusy(err)) {
+                        ctx.response().setStatusCode(503).putHeader("Retry-After", "1").end(err.getMessage());
+                        return;
+                    }
+                    ctx.response().setStatusCode(401).end(err.getMessage());
+                });
     }
 }
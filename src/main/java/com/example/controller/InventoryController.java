@@ -0,0 +1,94 @@
+package com.example.controller;
+
+import java.time.Instant;
+
+import com.example.model.Reservation;
+import com.example.service.InventoryReservations;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+// Only mounted when inventory.enabled is set
+public class InventoryController {
+
+    private final InventoryReservations inventory;
+
+    public InventoryController(Router router, InventoryReservations inventory) {
+        this.inventory = inventory;
+
+        router.get("/api/inventory").handler(this::handleStats);
+        router.post("/api/inventory/reservations").handler(this::handleReserve);
+        router.post("/api/inventory/reservations/:id/confirm").handler(this::handleConfirm);
+        router.delete("/api/inventory/reservations/:id").handler(this::handleRelease);
+    }
+
+    private void handleStats(RoutingContext ctx) {
+        ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(inventory.stats().encode());
+    }
+
+    // Body: {"customerId": 42, "productId": 7, "quantity": 1}
+    private void handleReserve(RoutingContext ctx) {
+        JsonObject json = ctx.body().asJsonObject();
+        Integer customerId = json != null ? json.getInteger("customerId") : null;
+        Integer productId = json != null ? json.getInteger("productId") : null;
+        if (customerId == null || productId == null) {
+            ctx.response().setStatusCode(400).end("Missing required fields: customerId, productId");
+            return;
+        }
+        int quantity = json.getInteger("quantity", 1);
+
+        inventory.reserve(customerId, productId, quantity)
+            .onSuccess(reservation -> ctx.response()
+                .setStatusCode(201)
+                .putHeader("Content-Type", "application/json")
+                .end(toJson(reservation).encode()))
+            .onFailure(err -> fail(ctx, err));
+    }
+
+    // Places the order for the reserved units, same shape as POST /api/orders/checkout
+    private void handleConfirm(RoutingContext ctx) {
+        inventory.confirm(ctx.pathParam("id"))
+            .onSuccess(order -> ctx.response()
+                .setStatusCode(201)
+                .putHeader("Content-Type", "application/json")
+                .end(Json.encode(order)))
+            .onFailure(err -> fail(ctx, err));
+    }
+
+    private void handleRelease(RoutingContext ctx) {
+        inventory.release(ctx.pathParam("id"))
+            .onSuccess(v -> ctx.response().setStatusCode(204).end())
+            .onFailure(err -> fail(ctx, err));
+    }
+
+    private static void fail(RoutingContext ctx, Throwable err) {
+        String msg = err.getMessage();
+        int status = 500;
+        if ("Reservation not found".equals(msg)) {
+            status = 404; // also once it expired, was released or confirmed
+        } else if (msg != null && (msg.startsWith("Insufficient stock") || msg.endsWith("no longer exists"))) {
+            status = 409;
+        } else if (msg != null && (msg.startsWith("Quantity") || msg.endsWith("not managed by inventory reservations"))) {
+            status = 400;
+        } else {
+            System.err.println("Inventory request failed: " + msg);
+        }
+        ctx.response()
+            .setStatusCode(status)
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject().put("error", msg).encode());
+    }
+
+    private static JsonObject toJson(Reservation reservation) {
+        return new JsonObject()
+            .put("id", reservation.getId())
+            .put("customerId", reservation.getCustomerId())
+            .put("productId", reservation.getProductId())
+            .put("quantity", reservation.getQuantity())
+            .put("expiresAt", Instant.ofEpochMilli(reservation.getExpiresAt()).toString());
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.controller;
+
+import com.example.metrics.MetricsRegistry;
+import com.example.middleware.JwtAuthHandler;
+import com.example.service.PasswordService;
+
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+// Mounted on the management router only, never on the public one
+public class MetricsController {
+
+    private final MetricsRegistry metrics;
+
+    public MetricsController(Router router, MetricsRegistry metrics, PasswordService passwordService) {
+        this.metrics = metrics;
+
+        metrics.jsonGauges("password_hasher", passwordService::metrics);
+        metrics.jsonGauges("token_cache", JwtAuthHandler::cacheStats);
+
+        router.get("/metrics").handler(this::handleScrape);
+    }
+
+    // Prometheus text exposition format
+    private void handleScrape(RoutingContext ctx) {
+        ctx.response()
+            .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+            .end(metrics.scrape());
+    }
+}
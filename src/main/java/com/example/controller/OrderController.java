@@ -0,0 +1,108 @@
+package com.example.controller;
+
+import com.example.service.OrderService;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+public class OrderController {
+
+    private final OrderService orderService;
+
+    public OrderController(Vertx vertx, Router router, OrderService orderService) {
+        this.orderService = orderService;
+
+        router.post("/api/orders/checkout").handler(this::checkout);
+        router.get("/api/orders/customer/:customerId").handler(this::getCustomerOrders);
+        router.get("/api/orders/:id").handler(this::getOrder);
+    }
+
+    // Body: {"customerId": 42}; the customer's whole cart becomes the order
+    private void checkout(RoutingContext ctx) {
+        JsonObject json = ctx.body().asJsonObject();
+        Integer customerId = json != null ? json.getInteger("customerId") : null;
+        if (customerId == null) {
+            ctx.response()
+                .setStatusCode(400)
+                .end("Missing required field: customerId");
+            return;
+        }
+
+        orderService.checkout(customerId)
+            .onSuccess(order -> ctx.response()
+                .setStatusCode(201)
+                .putHeader("Content-Type", "application/json")
+                .end(Json.encode(order)))
+            .onFailure(err -> {
+                String msg = err.getMessage();
+                int status = 500;
+                if ("Cart is empty".equals(msg)) {
+                    status = 400;
+                } else if (msg != null && (msg.startsWith("Insufficient stock") || msg.startsWith("Cart contains"))) {
+                    status = 409; // Conflict: the cart has to change before checking out again
+                } else {
+                    System.err.println("Checkout failed: " + msg);
+                    err.printStackTrace();
+                }
+                ctx.response()
+                    .setStatusCode(status)
+                    .putHeader("Content-Type", "application/json")
+                    .end(new JsonObject().put("error", msg).encode());
+            });
+    }
+
+    private void getOrder(RoutingContext ctx) {
+        try {
+            int id = Integer.parseInt(ctx.pathParam("id"));
+
+            orderService.getOrder(id)
+                .onSuccess(order -> {
+                    if (order == null) {
+                        ctx.response().setStatusCode(404).end("Order not found");
+                        return;
+                    }
+                    ctx.response()
+                        .putHeader("Content-Type", "application/json")
+                        .end(Json.encode(order));
+                })
+                .onFailure(err -> ctx.response()
+                    .setStatusCode(500)
+                    .end(new JsonObject()
+                        .put("error", "Failed to fetch order")
+                        .put("details", err.getMessage())
+                        .encode()));
+        } catch (NumberFormatException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .end(new JsonObject()
+                    .put("error", "Invalid order ID format")
+                    .encode());
+        }
+    }
+
+    private void getCustomerOrders(RoutingContext ctx) {
+        try {
+            int customerId = Integer.parseInt(ctx.pathParam("customerId"));
+
+            orderService.getOrdersByCustomerId(customerId)
+                .onSuccess(orders -> ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(Json.encode(orders)))
+                .onFailure(err -> ctx.response()
+                    .setStatusCode(500)
+                    .end(new JsonObject()
+                        .put("error", "Failed to fetch orders")
+                        .put("details", err.getMessage())
+                        .encode()));
+        } catch (NumberFormatException e) {
+            ctx.response()
+                .setStatusCode(400)
+                .end(new JsonObject()
+                    .put("error", "Invalid customer ID format")
+                    .encode());
+        }
+    }
+}
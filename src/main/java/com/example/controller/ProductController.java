@@ -12,11 +12,9 @@ public class ProductController {
     public ProductController(Vertx vertx, ProductService productService) {
         this.router = Router.router(vertx);
 
-        // BodyHandler for POST/PUT to parse JSON body
-        router.route().handler(io.vertx.ext.web.handler.BodyHandler.create());
-
         // Add public route BEFORE JWT middleware so it remains public
 router.get("/public").handler(productService::getAllPublic);
+        router.get("/public/export").handler(productService::exportPublic);
 
         // Protect all /products routes with JWT middleware
         router.route().handler(JwtAuthHandler::handle);
@@ -26,6 +24,7 @@ router.get("/public").handler(productService::getAllPublic);
         router.post("/").handler(productService::create);
         router.get("/:id").handler(productService::getById);
         router.put("/:id").handler(productService::update);
+        router.patch("/:id").handler(productService::patch);
         router.delete("/:id").handler(productService::delete);
     }
 
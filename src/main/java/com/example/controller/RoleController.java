@@ -3,7 +3,6 @@ package com.example.controller;
 import com.example.service.RoleService;
 
 import io.vertx.core.Vertx;
-import io.vertx.core.json.JsonArray;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
@@ -11,8 +10,8 @@ public class RoleController {
 
   private final RoleService roleService;
 
-  public RoleController(Vertx vertx, Router router) {
-    roleService = new RoleService();
+  public RoleController(Vertx vertx, Router router, RoleService roleService) {
+    this.roleService = roleService;
 
     router.get("/api/roles").handler(this::handleGetRoles);
   }
@@ -20,11 +19,10 @@ public class RoleController {
   private void handleGetRoles(RoutingContext context) {
     roleService.getRoles().onComplete(ar -> {
       if (ar.succeeded()) {
-        JsonArray jsonRoles = new JsonArray(ar.result());
         context.response()
           .putHeader("Content-Type", "application/json")
-          .setStatusCode(200)
-          .end(jsonRoles.encode());
+          .setStatusCode(200);
+        ar.result().send(context);
       } else {
         context.response()
           .setStatusCode(500)
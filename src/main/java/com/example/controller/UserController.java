@@ -1,29 +1,35 @@
 package com.example.controller;
 
 import com.example.model.User;
+import com.example.service.PasswordService;
+import com.example.service.RoleRegistry;
+import com.example.service.UserSearchIndex;
 import com.example.service.UserService;
+import com.example.util.EntityVersions;
 
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.pgclient.PgPool;
 
 public class UserController {
 
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     private final UserService userService;
 
-    public UserController(PgPool client) {
-        this.userService = new UserService(client);
+    public UserController(PgPool client, PasswordService passwordService, RoleRegistry roleRegistry, UserSearchIndex searchIndex,
+                          EntityVersions versions) {
+        this.userService = new UserService(client, passwordService, roleRegistry, searchIndex, versions);
     }
 
     public void mountRoutes(Router router) {
-        router.route("/api/users*").handler(BodyHandler.create());
-
         router.get("/api/roles").handler(this::handleGetRoles);
         router.get("/api/users").handler(this::handleGetAllUsers);
         router.get("/api/users/search").handler(this::handleSearchUsers);
+        router.get("/api/users/export").handler(userService::exportUsers);
         router.get("/api/users/:id").handler(this::handleGetUserById);
         router.post("/api/users").handler(this::handleCreateUser);
         router.put("/api/users/:id").handler(this::handleUpdateUser);
@@ -45,10 +51,14 @@ public class UserController {
     }
 
     private void handleGetAllUsers(RoutingContext ctx) {
+        String etag = userService.usersTag();
+        if (EntityVersions.notModified(ctx, etag)) return;
+
         userService.getAllUsers()
             .onSuccess(users -> ctx.response()
                 .putHeader("Content-Type", "application/json")
-                .end(Json.encodePrettily(users)))
+                .putHeader("ETag", etag)
+                .end(users))
             .onFailure(err -> {
                 err.printStackTrace();
                 ctx.response()
@@ -68,10 +78,28 @@ public class UserController {
             return;
         }
 
-        userService.searchUsers(query.trim())
+        // ?limit= (1-100, default 20) and ?offset= page through the ranked matches
+        int limit;
+        int offset;
+        try {
+            limit = Integer.parseInt(ctx.request().getParam("limit", String.valueOf(DEFAULT_SEARCH_LIMIT)));
+            offset = Integer.parseInt(ctx.request().getParam("offset", "0"));
+        } catch (NumberFormatException e) {
+            limit = -1;
+            offset = -1;
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT || offset < 0) {
+            ctx.response()
+                .setStatusCode(400)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", "limit must be between 1 and " + MAX_SEARCH_LIMIT + " and offset must not be negative").encode());
+            return;
+        }
+
+        userService.searchUsers(query.trim(), limit, offset)
             .onSuccess(users -> ctx.response()
                 .putHeader("Content-Type", "application/json")
-                .end(Json.encodePrettily(users)))
+                .end(users))
             .onFailure(err -> {
                 err.printStackTrace();
                 ctx.response()
@@ -134,6 +162,9 @@ public class UserController {
                     int status = 400;
                     if ("Username already exists".equals(msg) || "Email already exists".equals(msg) || "Username or email already exists".equals(msg)) {
                         status = 409; // Conflict
+                    } else if (PasswordService.isBusy(err)) {
+                        status = 503;
+                        ctx.response().putHeader("Retry-After", "1");
                     }
                     ctx.response()
                         .setStatusCode(status)
@@ -167,6 +198,10 @@ public class UserController {
                     err.printStackTrace();
                     String msg = err.getMessage();
                     int status = "Username or email already exists".equals(msg) ? 409 : 400;
+                    if (PasswordService.isBusy(err)) {
+                        status = 503;
+                        ctx.response().putHeader("Retry-After", "1");
+                    }
                     ctx.response()
                         .setStatusCode(status)
                         .putHeader("Content-Type", "application/json")
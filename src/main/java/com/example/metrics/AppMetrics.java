@@ -0,0 +1,60 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.VertxMetricsFactory;
+import io.vertx.core.spi.metrics.ClientMetrics;
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.metrics.PoolMetrics;
+import io.vertx.core.spi.metrics.VertxMetrics;
+
+/**
+ * Vert.x metrics SPI implementation feeding the MetricsRegistry: HTTP server
+ * requests, SQL client queries and worker pools. Enable it by creating Vert.x
+ * with vertxOptions() and factory():
+ *
+ *   Vertx.builder().with(AppMetrics.vertxOptions()).withMetrics(AppMetrics.factory()).build()
+ */
+public class AppMetrics implements VertxMetrics {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final SqlClientMetrics.Shared sql = new SqlClientMetrics.Shared(registry);
+    private final AtomicInteger httpInFlight = new AtomicInteger();
+
+    public AppMetrics() {
+        registry.gauge("http_server_requests_active", "Requests currently being processed", httpInFlight::get);
+    }
+
+    public static VertxOptions vertxOptions() {
+        return new VertxOptions().setMetricsOptions(new MetricsOptions().setEnabled(true));
+    }
+
+    public static VertxMetricsFactory factory() {
+        return options -> new AppMetrics();
+    }
+
+    @Override
+    public void vertxCreated(Vertx vertx) {
+        registry.install(vertx);
+    }
+
+    @Override
+    public HttpServerMetrics<?, ?, ?> createHttpServerMetrics(HttpServerOptions options, SocketAddress localAddress) {
+        return new HttpRequestMetrics(registry, httpInFlight);
+    }
+
+    @Override
+    public ClientMetrics<?, ?, ?, ?> createClientMetrics(SocketAddress remoteAddress, String type, String namespace) {
+        return "sql".equals(type) ? new SqlClientMetrics(sql) : null;
+    }
+
+    @Override
+    public PoolMetrics<?> createPoolMetrics(String poolType, String poolName, int maxPoolSize) {
+        return new WorkerPoolMetrics(registry, poolType, poolName, maxPoolSize);
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Finds code that blocks the event loop and attributes it to a route.
+ *
+ * handler() is installed first on the main router, so its ctx.next() covers
+ * the synchronous part of every handler chain. A watchdog thread samples the
+ * stack of any event loop that has been inside one handler call for longer
+ * than the threshold; the samples are attributed to the route once the call
+ * returns. Loops that stall outside a handler (e.g. in a database callback)
+ * are caught by a per-loop heartbeat and grouped by their top application
+ * frame instead.
+ *
+ * Routes of mounted sub-routers are only visible from inside them, so call
+ * trackSubRouter() on each before mounting it.
+ *
+ * Off unless blocking.enabled is set. The watchdog and every loop's heartbeat
+ * wake up once per sampleIntervalMs, so keep it coarse outside a hunt.
+ */
+public class BlockingDetector implements Shareable {
+
+    private static final String APP_PACKAGE = "com.example.";
+    private static final int STACK_DEPTH = 40;
+    private static final int MAX_FRAMES_PER_OFFENDER = 20;
+    // Context data key for the innermost sub-router context a request entered
+    private static final String SUB_ROUTER_CONTEXT = BlockingDetector.class.getName() + ".subRouterContext";
+
+    // State of one event loop thread, written by that loop and read by the watchdog
+    private static final class Loop {
+        final Thread thread;
+        volatile long callStart;
+        volatile long heartbeat = System.nanoTime();
+        long sampledStall;
+        final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+
+        Loop(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private static final class Sample {
+        final long callStart;
+        final StackTraceElement[] stack;
+
+        Sample(long callStart, StackTraceElement[] stack) {
+            this.callStart = callStart;
+            this.stack = stack;
+        }
+    }
+
+    private static final class Offender {
+        final String kind;
+        final String method;
+        final String route;
+        final LongAdder calls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder slowCalls = new LongAdder();
+        final LongAdder samples = new LongAdder();
+        final Map<String, LongAdder> frames = new ConcurrentHashMap<>();
+        volatile StackTraceElement[] lastStack;
+
+        Offender(String kind, String method, String route) {
+            this.kind = kind;
+            this.method = method;
+            this.route = route;
+        }
+
+        void sample(StackTraceElement[] stack) {
+            samples.increment();
+            lastStack = stack;
+            String frame = topAppFrame(stack);
+            LongAdder count = frames.get(frame);
+            if (count == null && frames.size() < MAX_FRAMES_PER_OFFENDER) {
+                count = frames.computeIfAbsent(frame, key -> new LongAdder());
+            }
+            if (count != null) {
+                count.increment();
+            }
+        }
+
+        // Handler calls are timed exactly; stalls outside handlers are estimated from the sample count
+        long blockedNanos(long sampleIntervalNanos) {
+            return kind.equals("handler") ? totalNanos.sum() : samples.sum() * sampleIntervalNanos;
+        }
+    }
+
+    private final Vertx vertx;
+    private final MetricsRegistry registry;
+    private final long thresholdNanos;
+    private final long sampleIntervalMs;
+    private final Map<Thread, Loop> loops = new ConcurrentHashMap<>();
+    private final Map<String, Offender> offenders = new ConcurrentHashMap<>();
+    private final Handler<RoutingContext> handler = this::trace;
+
+    public static BlockingDetector shared(Vertx vertx, MetricsRegistry registry, JsonObject config) {
+        LocalMap<String, BlockingDetector> detectors = vertx.sharedData().getLocalMap(BlockingDetector.class.getName());
+        return detectors.computeIfAbsent("default", name -> {
+            BlockingDetector detector = new BlockingDetector(vertx, registry, config);
+            detector.startWatchdog();
+            return detector;
+        });
+    }
+
+    private BlockingDetector(Vertx vertx, MetricsRegistry registry, JsonObject config) {
+        this.vertx = vertx;
+        this.registry = registry;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("thresholdMs", 20L));
+        this.sampleIntervalMs = config.getLong("sampleIntervalMs", 50L);
+    }
+
+    // Root handler; must be registered before any other handler on the main router
+    public Handler<RoutingContext> handler() {
+        return handler;
+    }
+
+    // Sub-router contexts share their data with the root one, so the root handler can find the route they ran
+    public void trackSubRouter(Router subRouter) {
+        subRouter.route().order(Integer.MIN_VALUE).handler(ctx -> {
+            ctx.put(SUB_ROUTER_CONTEXT, ctx);
+            ctx.next();
+        });
+    }
+
+    private void trace(RoutingContext ctx) {
+        Loop loop = loops.get(Thread.currentThread());
+        if (loop == null) {
+            loop = register();
+        }
+
+        long start = System.nanoTime();
+        loop.callStart = start;
+        try {
+            ctx.next();
+        } finally {
+            long end = System.nanoTime();
+            long elapsed = end - start;
+            loop.callStart = 0;
+            // The heartbeat timer could not run during the call either
+            loop.heartbeat = end;
+
+            String method = ctx.request().method().name();
+            record(method, routeOf(ctx), start, elapsed, loop);
+        }
+    }
+
+    // Template of the route the chain was in when it returned, e.g. /api/products/:id
+    private static String routeOf(RoutingContext ctx) {
+        RoutingContext inner = ctx.get(SUB_ROUTER_CONTEXT);
+        RoutingContext routed = inner != null ? inner : ctx;
+        Route route = routed.currentRoute();
+        if (route == null || route.getPath() == null) {
+            return "unmatched";
+        }
+        return routed.mountPoint() != null ? routed.mountPoint() + route.getPath() : route.getPath();
+    }
+
+    // First request on this event loop: start its heartbeat so stalls outside handlers are visible too
+    private Loop register() {
+        Loop loop = new Loop(Thread.currentThread());
+        loops.put(loop.thread, loop);
+        vertx.setPeriodic(sampleIntervalMs, id -> loop.heartbeat = System.nanoTime());
+        return loop;
+    }
+
+    private void record(String method, String route, long start, long elapsed, Loop loop) {
+        registry.histogram("http_handler_sync_seconds", "Time handlers spent synchronously on the event loop",
+            "method", method, "route", route).record(elapsed);
+
+        Offender offender = offenders.computeIfAbsent("handler " + method + " " + route,
+            key -> new Offender("handler", method, route));
+        offender.calls.increment();
+        offender.totalNanos.add(elapsed);
+        offender.maxNanos.accumulate(elapsed);
+        if (elapsed > thresholdNanos) {
+            offender.slowCalls.increment();
+            registry.counter("http_handler_slow_total", "Handler calls that blocked the event loop past the threshold",
+                "method", method, "route", route).increment();
+        }
+
+        Sample sample;
+        while ((sample = loop.samples.poll()) != null) {
+            // Skip samples the watchdog took just as an earlier call returned
+            if (sample.callStart == start) {
+                offender.sample(sample.stack);
+            }
+        }
+    }
+
+    private void startWatchdog() {
+        Thread watchdog = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(sampleIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long now = System.nanoTime();
+                for (Loop loop : loops.values()) {
+                    check(loop, now);
+                }
+            }
+        }, "blocking-detector");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    private void check(Loop loop, long now) {
+        long callStart = loop.callStart;
+        if (callStart != 0) {
+            if (now - callStart > thresholdNanos) {
+                // The route is only known to the loop itself, so it attributes the samples when the call returns
+                loop.samples.add(new Sample(callStart, stack(loop.thread)));
+            }
+            return;
+        }
+
+        long heartbeat = loop.heartbeat;
+        if (now - heartbeat > thresholdNanos + TimeUnit.MILLISECONDS.toNanos(sampleIntervalMs)) {
+            StackTraceElement[] stack = stack(loop.thread);
+            // The loop may have finished its task between the two reads
+            if (loop.heartbeat != heartbeat || loop.callStart != 0) {
+                return;
+            }
+            String frame = topAppFrame(stack);
+            Offender offender = offenders.computeIfAbsent("callback " + frame,
+                key -> new Offender("callback", null, frame));
+            if (loop.sampledStall != heartbeat) {
+                loop.sampledStall = heartbeat;
+                offender.calls.increment();
+                registry.counter("eventloop_stalls_total", "Event loop stalls outside a route handler",
+                    "frame", frame).increment();
+            }
+            offender.sample(stack);
+        }
+    }
+
+    private static StackTraceElement[] stack(Thread thread) {
+        StackTraceElement[] stack = thread.getStackTrace();
+        if (stack.length <= STACK_DEPTH) {
+            return stack;
+        }
+        StackTraceElement[] trimmed = new StackTraceElement[STACK_DEPTH];
+        System.arraycopy(stack, 0, trimmed, 0, STACK_DEPTH);
+        return trimmed;
+    }
+
+    // Innermost frame from this application, falling back to the innermost frame overall
+    private static String topAppFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith(APP_PACKAGE)
+                && !frame.getClassName().startsWith(BlockingDetector.class.getName())) {
+                return frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+        return stack.length > 0 ? stack[0].getClassName() + "." + stack[0].getMethodName() : "unknown";
+    }
+
+    // Offenders ordered by total time they kept an event loop busy
+    public JsonObject report(int limit) {
+        long sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sampleIntervalMs);
+        List<Offender> sorted = new ArrayList<>(offenders.values());
+        sorted.sort(Comparator.comparingLong((Offender o) -> o.blockedNanos(sampleIntervalNanos)).reversed());
+
+        JsonArray top = new JsonArray();
+        for (Offender offender : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            long calls = offender.calls.sum();
+            JsonObject entry = new JsonObject()
+                .put("kind", offender.kind)
+                .put("method", offender.method)
+                .put("route", offender.route)
+                .put("calls", calls)
+                .put("blockedMs", millis(offender.blockedNanos(sampleIntervalNanos)));
+            if (offender.kind.equals("handler")) {
+                entry.put("avgMs", calls == 0 ? 0 : millis(offender.totalNanos.sum() / calls))
+                    .put("maxMs", millis(offender.maxNanos.get()))
+                    .put("slowCalls", offender.slowCalls.sum());
+            }
+            entry.put("samples", offender.samples.sum());
+
+            JsonArray frames = new JsonArray();
+            offender.frames.entrySet().stream()
+                .sorted(Map.Entry.<String, LongAdder>comparingByValue(Comparator.comparingLong(LongAdder::sum)).reversed())
+                .forEach(frame -> frames.add(new JsonObject().put("frame", frame.getKey()).put("samples", frame.getValue().sum())));
+            entry.put("frames", frames);
+
+            StackTraceElement[] lastStack = offender.lastStack;
+            if (lastStack != null) {
+                JsonArray stack = new JsonArray();
+                for (StackTraceElement frame : lastStack) {
+                    stack.add(frame.toString());
+                }
+                entry.put("lastStack", stack);
+            }
+            top.add(entry);
+        }
+
+        return new JsonObject()
+            .put("thresholdMs", millis(thresholdNanos))
+            .put("sampleIntervalMs", sampleIntervalMs)
+            .put("eventLoops", loops.size())
+            .put("offenders", top);
+    }
+
+    public void reset() {
+        offenders.clear();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.metrics;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Measures how late a timer fires on the calling verticle's event loop. Any
+ * lag beyond a few milliseconds means handlers on that loop are blocking it.
+ */
+public final class EventLoopLagProbe {
+
+    private static final long INTERVAL_MS = 100;
+
+    private EventLoopLagProbe() {
+    }
+
+    // Call from a verticle's start(); the probe runs on that verticle's event loop
+    public static void start(Vertx vertx, MetricsRegistry registry) {
+        LatencyHistogram lag = registry.histogram("eventloop_lag_seconds",
+            "Delay between when a timer was due and when it ran", "thread", Thread.currentThread().getName());
+        schedule(vertx, lag);
+    }
+
+    private static void schedule(Vertx vertx, LatencyHistogram lag) {
+        long due = System.nanoTime() + INTERVAL_MS * 1_000_000;
+        vertx.setTimer(INTERVAL_MS, id -> {
+            lag.record(Math.max(0, System.nanoTime() - due));
+            schedule(vertx, lag);
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.observability.HttpRequest;
+import io.vertx.core.spi.observability.HttpResponse;
+
+/**
+ * Per-route request latency and status counts.
+ *
+ * Vert.x Web reports each route a request passes through (requestRouted), so
+ * the series are labelled with route templates such as /api/products/:id
+ * rather than raw paths. Requests no route matched share the "unmatched" label.
+ */
+class HttpRequestMetrics implements HttpServerMetrics<HttpRequestMetrics.RequestMetric, Void, Void> {
+
+    static final class RequestMetric {
+        final long start = System.nanoTime();
+        final String method;
+        final List<String> routes = new ArrayList<>(4);
+
+        RequestMetric(String method) {
+            this.method = method;
+        }
+
+        // Vert.x reports a mount point as "/api/products" and the sub-router's routes relative to it
+        String route() {
+            String route = null;
+            for (String name : routes) {
+                route = route == null || name.startsWith(route) ? name : route + name;
+            }
+            return route != null ? route : "unmatched";
+        }
+    }
+
+    private final MetricsRegistry registry;
+    private final AtomicInteger inFlight;
+
+    // inFlight is shared by every server instance
+    HttpRequestMetrics(MetricsRegistry registry, AtomicInteger inFlight) {
+        this.registry = registry;
+        this.inFlight = inFlight;
+    }
+
+    @Override
+    public RequestMetric requestBegin(Void socketMetric, HttpRequest request) {
+        inFlight.incrementAndGet();
+        return new RequestMetric(request.method().name());
+    }
+
+    @Override
+    public void requestRouted(RequestMetric metric, String route) {
+        if (route != null) {
+            metric.routes.add(route);
+        }
+    }
+
+    @Override
+    public void responseEnd(RequestMetric metric, HttpResponse response, long bytesWritten) {
+        inFlight.decrementAndGet();
+        String route = metric.route();
+        registry.histogram("http_server_requests_seconds", "HTTP request latency by route",
+            "method", metric.method, "route", route).record(System.nanoTime() - metric.start);
+        registry.counter("http_server_responses_total", "HTTP responses by route and status",
+            "method", metric.method, "route", route, "status", String.valueOf(response.statusCode())).increment();
+    }
+
+    @Override
+    public void requestReset(RequestMetric metric) {
+        inFlight.decrementAndGet();
+        registry.counter("http_server_requests_reset_total", "Requests aborted before a response was sent",
+            "method", metric.method, "route", metric.route()).increment();
+    }
+}
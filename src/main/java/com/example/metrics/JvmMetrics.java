@@ -0,0 +1,41 @@
+package com.example.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Heap, GC and thread gauges read from the platform MXBeans at scrape time.
+ */
+final class JvmMetrics {
+
+    private JvmMetrics() {
+    }
+
+    static void register(MetricsRegistry registry) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        registry.gauge("jvm_memory_used_bytes", "Used JVM memory",
+            () -> memory.getHeapMemoryUsage().getUsed(), "area", "heap");
+        registry.gauge("jvm_memory_used_bytes", "Used JVM memory",
+            () -> memory.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        registry.gauge("jvm_memory_committed_bytes", "Committed JVM memory",
+            () -> memory.getHeapMemoryUsage().getCommitted(), "area", "heap");
+        registry.gauge("jvm_memory_committed_bytes", "Committed JVM memory",
+            () -> memory.getNonHeapMemoryUsage().getCommitted(), "area", "nonheap");
+        registry.gauge("jvm_memory_max_bytes", "Maximum heap size",
+            () -> memory.getHeapMemoryUsage().getMax(), "area", "heap");
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            registry.counterFunction("jvm_gc_collections_total", "Garbage collections",
+                gc::getCollectionCount, "gc", gc.getName());
+            registry.counterFunction("jvm_gc_collection_seconds_total", "Time spent in garbage collection",
+                () -> gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        registry.gauge("jvm_threads", "Live JVM threads", threads::getThreadCount);
+        registry.gauge("process_uptime_seconds", "JVM uptime",
+            () -> ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency distribution for one labelled series.
+ *
+ * Count and sum are cumulative since startup, as Prometheus expects. Quantiles
+ * cover a sliding window of the last WINDOW_SLICES rotations, so they reflect
+ * current behaviour instead of being averaged away over the process lifetime.
+ */
+public class LatencyHistogram {
+
+    static final int WINDOW_SLICES = 6;
+
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(MAX_MICROS, SIGNIFICANT_DIGITS);
+    private final Histogram[] slices = new Histogram[WINDOW_SLICES];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private int current;
+
+    // Lock-free for concurrent writers
+    public void record(long nanos) {
+        long micros = Math.max(0, Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_MICROS));
+        recorder.recordValue(micros);
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double sumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    // Moves everything recorded since the last call into the window
+    synchronized void rotate() {
+        current = (current + 1) % WINDOW_SLICES;
+        slices[current] = slices[current] == null
+            ? recorder.getIntervalHistogram()
+            : recorder.getIntervalHistogram(slices[current]);
+    }
+
+    synchronized Histogram window() {
+        Histogram merged = new Histogram(MAX_MICROS, SIGNIFICANT_DIGITS);
+        for (Histogram slice : slices) {
+            if (slice != null) {
+                merged.add(slice);
+            }
+        }
+        return merged;
+    }
+}
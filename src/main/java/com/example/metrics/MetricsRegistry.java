@@ -0,0 +1,196 @@
+package com.example.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Histogram;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Process-wide metrics, rendered in the Prometheus text exposition format.
+ *
+ * Series are identified by a family name plus alternating label names and
+ * values, e.g. histogram("http_server_requests_seconds", help, "method", "GET").
+ * Histograms are exposed as summaries with windowed quantiles.
+ */
+public class MetricsRegistry implements Shareable {
+
+    private static final long ROTATE_INTERVAL_MS = 10_000;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Supplier<JsonObject>> jsonSources = new ConcurrentHashMap<>();
+
+    // The registry installed by AppMetrics, or a detached one when Vert.x runs without metrics
+    public static MetricsRegistry get(Vertx vertx) {
+        LocalMap<String, MetricsRegistry> registries = vertx.sharedData().getLocalMap(MetricsRegistry.class.getName());
+        return registries.computeIfAbsent("default", name -> {
+            MetricsRegistry registry = new MetricsRegistry();
+            registry.start(vertx);
+            return registry;
+        });
+    }
+
+    void install(Vertx vertx) {
+        vertx.sharedData().<String, MetricsRegistry>getLocalMap(MetricsRegistry.class.getName()).put("default", this);
+        start(vertx);
+    }
+
+    private void start(Vertx vertx) {
+        JvmMetrics.register(this);
+        vertx.setPeriodic(ROTATE_INTERVAL_MS, id -> rotate());
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).series
+            .computeIfAbsent(labels(labels), key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).series
+            .computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    // Value read at scrape time; the first registration for a series wins
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.putIfAbsent(labels(labels), value);
+    }
+
+    // Like gauge(), for monotonically increasing values kept elsewhere
+    public void counterFunction(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).series.putIfAbsent(labels(labels), value);
+    }
+
+    /**
+     * Every numeric field of the supplied JSON becomes a gauge named
+     * prefix_field_in_snake_case; used for components that already report
+     * their state as JSON (password hasher, token cache).
+     */
+    public void jsonGauges(String prefix, Supplier<JsonObject> source) {
+        jsonSources.putIfAbsent(prefix, source);
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                writeSeries(out, family.name, series.getKey(), series.getValue());
+            }
+        }
+        for (Map.Entry<String, Supplier<JsonObject>> source : new TreeMap<>(jsonSources).entrySet()) {
+            writeJson(out, source.getKey(), source.getValue().get());
+        }
+        return out.toString();
+    }
+
+    private void writeSeries(StringBuilder out, String name, String labels, Object value) {
+        if (value instanceof LatencyHistogram) {
+            LatencyHistogram histogram = (LatencyHistogram) value;
+            Histogram window = histogram.window();
+            for (double quantile : QUANTILES) {
+                String quantileLabels = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + quantile + "\"";
+                sample(out, name, quantileLabels, window.getTotalCount() == 0
+                    ? Double.NaN
+                    : window.getValueAtPercentile(quantile * 100) / 1e6);
+            }
+            sample(out, name + "_sum", labels, histogram.sumSeconds());
+            sample(out, name + "_count", labels, histogram.count());
+        } else if (value instanceof LongAdder) {
+            sample(out, name, labels, ((LongAdder) value).sum());
+        } else {
+            sample(out, name, labels, ((DoubleSupplier) value).getAsDouble());
+        }
+    }
+
+    private void writeJson(StringBuilder out, String prefix, JsonObject json) {
+        for (String field : new TreeMap<>(json.getMap()).keySet()) {
+            Object value = json.getValue(field);
+            if (value instanceof Number) {
+                String name = prefix + "_" + snakeCase(field);
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                sample(out, name, "", ((Number) value).doubleValue());
+            }
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private void rotate() {
+        for (Family family : families.values()) {
+            if (family.type == Type.SUMMARY) {
+                for (Object histogram : family.series.values()) {
+                    ((LatencyHistogram) histogram).rotate();
+                }
+            }
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) out.append(',');
+            out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return out.toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String snakeCase(String field) {
+        return field.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
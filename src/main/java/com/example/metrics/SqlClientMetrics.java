@@ -0,0 +1,58 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.spi.metrics.ClientMetrics;
+
+/**
+ * Query latency and connection counts reported by the SQL client. Vert.x
+ * creates one instance per database connection and closes it with the
+ * connection; the counters behind it are shared.
+ */
+class SqlClientMetrics implements ClientMetrics<Long, Void, Object, Object> {
+
+    static final class Shared {
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LatencyHistogram latency;
+        final LongAdder failures;
+
+        Shared(MetricsRegistry registry) {
+            latency = registry.histogram("db_query_seconds", "Database query latency, sent to last row");
+            failures = registry.counter("db_query_failures_total", "Failed or reset database queries");
+            registry.gauge("db_connections_open", "Open database connections", connections::get);
+            registry.gauge("db_queries_active", "Queries sent and not yet answered", inFlight::get);
+        }
+    }
+
+    private final Shared shared;
+
+    SqlClientMetrics(Shared shared) {
+        this.shared = shared;
+        shared.connections.incrementAndGet();
+    }
+
+    @Override
+    public Long requestBegin(String uri, Object request) {
+        shared.inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    @Override
+    public void responseEnd(Long start) {
+        shared.inFlight.decrementAndGet();
+        shared.latency.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void requestReset(Long start) {
+        shared.inFlight.decrementAndGet();
+        shared.failures.increment();
+    }
+
+    @Override
+    public void close() {
+        shared.connections.decrementAndGet();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.spi.metrics.PoolMetrics;
+
+/**
+ * Queue and usage of a Vert.x worker pool (the default worker pool, the
+ * internal blocking pool and named executors such as password-hasher).
+ */
+class WorkerPoolMetrics implements PoolMetrics<Long> {
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final LatencyHistogram waitTime;
+    private final LatencyHistogram usageTime;
+    private final LongAdder rejected;
+
+    WorkerPoolMetrics(MetricsRegistry registry, String type, String name, int maxSize) {
+        String[] labels = {"type", type, "pool", name};
+        waitTime = registry.histogram("pool_queue_seconds", "Time tasks wait for a pool thread", labels);
+        usageTime = registry.histogram("pool_usage_seconds", "Time tasks hold a pool thread", labels);
+        rejected = registry.counter("pool_rejected_total", "Tasks rejected by the pool", labels);
+        registry.gauge("pool_queued", "Tasks waiting for a pool thread", queued::get, labels);
+        registry.gauge("pool_in_use", "Pool threads running a task", inUse::get, labels);
+        registry.gauge("pool_max_size", "Pool size", () -> maxSize, labels);
+    }
+
+    @Override
+    public Long submitted() {
+        queued.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    @Override
+    public void rejected(Long submitted) {
+        queued.decrementAndGet();
+        rejected.increment();
+    }
+
+    @Override
+    public Long begin(Long submitted) {
+        queued.decrementAndGet();
+        inUse.incrementAndGet();
+        long now = System.nanoTime();
+        waitTime.record(now - submitted);
+        return now;
+    }
+
+    @Override
+    public void end(Long begun, boolean succeeded) {
+        inUse.decrementAndGet();
+        usageTime.record(System.nanoTime() - begun);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.middleware;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+
+/**
+ * The one place request bodies are read. Bodies are only buffered for
+ * POST/PUT/PATCH, and each path prefix gets its own size limit from the
+ * "body" config section, e.g. {"defaultLimitBytes": 65536,
+ * "limits": {"/api/cart/batch": 1048576}}. The longest matching prefix wins.
+ *
+ * A declared Content-Length over the limit is rejected with 413 before any of
+ * the body is read; chunked bodies are cut off by BodyHandler as soon as they
+ * pass the limit.
+ */
+public class BodyPolicy {
+
+    public static final long DEFAULT_LIMIT_BYTES = 64 * 1024;
+
+    private static final class Limit {
+        final String prefix;
+        final long bytes;
+        final BodyHandler bodyHandler;
+
+        Limit(String prefix, long bytes) {
+            this.prefix = prefix;
+            this.bytes = bytes;
+            // No multipart uploads anywhere in the API, so never write temp files
+            this.bodyHandler = BodyHandler.create(false).setBodyLimit(bytes);
+        }
+    }
+
+    private final Limit defaultLimit;
+    private final List<Limit> limits = new ArrayList<>();
+
+    public BodyPolicy(JsonObject config) {
+        this.defaultLimit = new Limit("", config.getLong("defaultLimitBytes", DEFAULT_LIMIT_BYTES));
+        JsonObject perRoute = config.getJsonObject("limits", new JsonObject());
+        for (String prefix : perRoute.fieldNames()) {
+            limits.add(new Limit(prefix, perRoute.getLong(prefix)));
+        }
+        limits.sort(Comparator.comparingInt((Limit limit) -> limit.prefix.length()).reversed());
+    }
+
+    // Register ahead of every route that reads a body
+    public void install(Router router) {
+        router.route()
+            .method(HttpMethod.POST)
+            .method(HttpMethod.PUT)
+            .method(HttpMethod.PATCH)
+            .handler(this::handle);
+    }
+
+    private void handle(RoutingContext ctx) {
+        Limit limit = limitFor(ctx.request().path());
+
+        String contentLength = ctx.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength) > limit.bytes) {
+                    // Closing avoids draining a body nobody will read
+                    ctx.response()
+                        .putHeader(HttpHeaders.CONNECTION, "close")
+                        .setStatusCode(413)
+                        .end("Request body exceeds " + limit.bytes + " bytes");
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                ctx.response().setStatusCode(400).end("Invalid Content-Length");
+                return;
+            }
+        }
+
+        limit.bodyHandler.handle(ctx);
+    }
+
+    private Limit limitFor(String path) {
+        if (path != null) {
+            for (Limit limit : limits) {
+                if (path.startsWith(limit.prefix)) {
+                    return limit;
+                }
+            }
+        }
+        return defaultLimit;
+    }
+}
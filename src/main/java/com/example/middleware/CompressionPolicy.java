@@ -0,0 +1,49 @@
+package com.example.middleware;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Size threshold for the on-the-fly compression enabled by
+ * http.compressionSupported, which on its own gzips every response however
+ * small. Bodies with a Content-Length under http.compressionThreshold bytes
+ * are marked identity, which Vert.x honours and strips before sending;
+ * anything larger or streamed is left to the compressor and gets
+ * Vary: Accept-Encoding.
+ *
+ * Responses that already chose their encoding (see PrecompressedBody) are
+ * never touched, so hot payloads are not compressed per request.
+ */
+public class CompressionPolicy {
+
+    private final int thresholdBytes;
+
+    public CompressionPolicy(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    // Register ahead of every route that writes a response
+    public void install(Router router) {
+        router.route().handler(this::handle);
+    }
+
+    private void handle(RoutingContext ctx) {
+        HttpServerResponse response = ctx.response();
+        // Runs once Content-Length is known for bodies written with end(...)
+        ctx.addHeadersEndHandler(v -> {
+            if (response.headers().contains(HttpHeaders.CONTENT_ENCODING)
+                    || response.headers().contains(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING, true)) {
+                return;
+            }
+            String length = response.headers().get(HttpHeaders.CONTENT_LENGTH);
+            if (length != null && Long.parseLong(length) < thresholdBytes) {
+                response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+            } else {
+                response.headers().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+        });
+        ctx.next();
+    }
+}
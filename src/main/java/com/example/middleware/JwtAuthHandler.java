@@ -1,14 +1,21 @@
 package com.example.middleware;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import java.util.Date;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.util.JwtUtil;
 
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 
 public class JwtAuthHandler {
 
-    private static final String SECRET = "your-very-secret-key"; // Keep this safe and consistent
+    private static final int MAX_CACHED_TOKENS = 10_000;
+    private static final long MAX_CACHE_TTL_MS = 15 * 60 * 1000; // for tokens without an expiry
+
+    private static final VerifiedTokenCache cache = new VerifiedTokenCache(MAX_CACHED_TOKENS);
 
     public static void handle(RoutingContext ctx) {
         String authHeader = ctx.request().getHeader("Authorization");
@@ -20,20 +27,62 @@ public class JwtAuthHandler {
 
         String token = authHeader.substring("Bearer ".length());
 
+        VerifiedTokenCache.VerifiedToken verified;
         try {
-            Algorithm algorithm = Algorithm.HMAC256(SECRET);
-            DecodedJWT decodedJWT = JWT.require(algorithm).build().verify(token);
+            verified = authenticate(token);
+        } catch (Exception e) {
+            ctx.response().setStatusCode(401).end("Invalid token: " + e.getMessage());
+            return;
+        }
+
+        ctx.put("userId", verified.getUserId());
+        ctx.put("username", verified.getUsername());
+        ctx.put("role", verified.getRole());
+        ctx.next(); // Continue to route
+    }
 
-            String userId = decodedJWT.getSubject();
-            if (userId == null) {
-                ctx.response().setStatusCode(401).end("Invalid token: no subject");
+    // Register after handle(): only requests whose token carries the role get through
+    public static Handler<RoutingContext> requireRole(String role) {
+        return ctx -> {
+            if (!role.equals(ctx.get("role"))) {
+                ctx.response().setStatusCode(403).end("Forbidden: " + role + " role required");
                 return;
             }
+            ctx.next();
+        };
+    }
 
-            ctx.put("userId", Integer.parseInt(userId));
-            ctx.next(); // Continue to route
-        } catch (Exception e) {
-            ctx.response().setStatusCode(401).end("Invalid token: " + e.getMessage());
+    // Repeat requests with the same token skip Base64 decoding and the HMAC check
+    static VerifiedTokenCache.VerifiedToken authenticate(String token) {
+        VerifiedTokenCache.VerifiedToken verified = cache.get(token);
+        if (verified != null) {
+            return verified;
         }
+
+        DecodedJWT decodedJWT = JwtUtil.verifyToken(token);
+
+        String userId = decodedJWT.getSubject();
+        if (userId == null) {
+            throw new JWTVerificationException("no subject");
+        }
+
+        Date expiresAt = decodedJWT.getExpiresAt();
+        long expiresAtMillis = System.currentTimeMillis() + MAX_CACHE_TTL_MS;
+        if (expiresAt != null) {
+            expiresAtMillis = Math.min(expiresAt.getTime(), expiresAtMillis);
+        }
+
+        verified = new VerifiedTokenCache.VerifiedToken(
+            Integer.parseInt(userId),
+            decodedJWT.getClaim("username").asString(),
+            decodedJWT.getClaim("role").asString(),
+            expiresAtMillis
+        );
+        cache.put(token, verified);
+        return verified;
+    }
+
+    public static JsonObject cacheStats() {
+        return cache.stats();
     }
 }
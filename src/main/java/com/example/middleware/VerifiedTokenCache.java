@@ -0,0 +1,114 @@
+package com.example.middleware;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Bounded cache of tokens that already passed signature verification, keyed by
+ * the full token string so a forged payload can never hit another token's entry.
+ * Entries are dropped once the token's own expiry passes.
+ *
+ * Shared by every event loop, so reads take no lock and never modify the map.
+ * Eviction is approximate: once maxEntries is passed, one caller sweeps out
+ * expired tokens and then arbitrary ones until the cache is back to
+ * EVICT_TO_FRACTION of its size, while everyone else carries on.
+ */
+public class VerifiedTokenCache {
+
+    public static class VerifiedToken {
+        private final int userId;
+        private final String username;
+        private final String role;
+        private final long expiresAtMillis;
+
+        public VerifiedToken(int userId, String username, String role, long expiresAtMillis) {
+            this.userId = userId;
+            this.username = username;
+            this.role = role;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public int getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getRole() { return role; }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+    }
+
+    private static final double EVICT_TO_FRACTION = 0.9;
+
+    private final int maxEntries;
+    private final Map<String, VerifiedToken> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public VerifiedToken get(String token) {
+        VerifiedToken verified = entries.get(token);
+        if (verified != null && verified.getExpiresAtMillis() <= System.currentTimeMillis()) {
+            if (entries.remove(token, verified)) {
+                expired.increment();
+            }
+            verified = null;
+        }
+        if (verified == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return verified;
+    }
+
+    public void put(String token, VerifiedToken verified) {
+        entries.put(token, verified);
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = (int) (maxEntries * EVICT_TO_FRACTION);
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(verified -> {
+                if (verified.getExpiresAtMillis() <= now) {
+                    expired.increment();
+                    return true;
+                }
+                return false;
+            });
+            Iterator<VerifiedToken> it = entries.values().iterator();
+            while (entries.size() > target && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+            .put("size", entries.size())
+            .put("maxEntries", maxEntries)
+            .put("hits", hits.sum())
+            .put("misses", misses.sum())
+            .put("expired", expired.sum())
+            .put("evictions", evictions.sum());
+    }
+}
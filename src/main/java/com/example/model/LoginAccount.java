@@ -0,0 +1,30 @@
+package com.example.model;
+
+// A login name resolved to either a system user or a customer
+public class LoginAccount {
+    private final User user;
+    private final Customer customer;
+
+    private LoginAccount(User user, Customer customer) {
+        this.user = user;
+        this.customer = customer;
+    }
+
+    public static LoginAccount user(User user) {
+        return new LoginAccount(user, null);
+    }
+
+    public static LoginAccount customer(Customer customer) {
+        return new LoginAccount(null, customer);
+    }
+
+    public boolean isCustomer() { return customer != null; }
+
+    public User getUser() { return user; }
+
+    public Customer getCustomer() { return customer; }
+
+    public String getPasswordHash() {
+        return customer != null ? customer.getPassword() : user.getPasswordHash();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Order {
+    private Integer id;
+    private Integer customerId;
+    private String status;
+    private Double total;
+    private String createdAt;
+    private List<OrderItem> items = new ArrayList<>();
+
+    // Getters and Setters
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public Integer getCustomerId() { return customerId; }
+    public void setCustomerId(Integer customerId) { this.customerId = customerId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Double getTotal() { return total; }
+    public void setTotal(Double total) { this.total = total; }
+
+    public String getCreatedAt() { return createdAt; }
+    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+
+    public List<OrderItem> getItems() { return items; }
+    public void setItems(List<OrderItem> items) { this.items = items; }
+}
@@ -0,0 +1,30 @@
+package com.example.model;
+
+public class OrderItem {
+    private Integer productId;
+    private String name;
+    private Double price;
+    private Integer quantity;
+
+    public OrderItem() {}
+
+    public OrderItem(Integer productId, String name, Double price, Integer quantity) {
+        this.productId = productId;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Double getPrice() { return price; }
+    public void setPrice(Double price) { this.price = price; }
+
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+}
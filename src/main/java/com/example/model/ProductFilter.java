@@ -0,0 +1,140 @@
+package com.example.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Keyset page request for product listings: ?cursor=&limit=&minPrice=&maxPrice=&inStock=&q=
+ * The cursor is an opaque token wrapping the last product id of the previous page.
+ * Listings are always paged; without parameters they return the first DEFAULT_LIMIT products.
+ */
+public class ProductFilter {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private int afterId;
+    private int limit = DEFAULT_LIMIT;
+    private Double minPrice;
+    private Double maxPrice;
+    private boolean inStock;
+    private String namePrefix;
+
+    // Throws IllegalArgumentException on malformed input
+    public static ProductFilter fromParams(MultiMap params) {
+        ProductFilter filter = new ProductFilter();
+
+        String cursor = params.get("cursor");
+        if (cursor != null && !cursor.isEmpty()) {
+            filter.afterId = decodeCursor(cursor);
+        }
+
+        String limit = params.get("limit");
+        if (limit != null) {
+            filter.limit = parseInt(limit, "limit");
+            if (filter.limit < 1 || filter.limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+        }
+
+        filter.minPrice = parseDouble(params.get("minPrice"), "minPrice");
+        filter.maxPrice = parseDouble(params.get("maxPrice"), "maxPrice");
+        filter.inStock = Boolean.parseBoolean(params.get("inStock"));
+
+        String q = params.get("q");
+        if (q != null && !q.trim().isEmpty()) {
+            filter.namePrefix = q.trim().toLowerCase(Locale.ROOT);
+        }
+
+        return filter;
+    }
+
+    public static String encodeCursor(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor) {
+        try {
+            return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name);
+        }
+    }
+
+    private static Double parseDouble(String value, String name) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name);
+        }
+    }
+
+    // In-memory equivalent of the SQL predicate, used against cached products
+    public boolean matches(JsonObject product) {
+        if (minPrice != null || maxPrice != null) {
+            Number price = product.getNumber("price");
+            if (price == null) return false;
+            if (minPrice != null && price.doubleValue() < minPrice) return false;
+            if (maxPrice != null && price.doubleValue() > maxPrice) return false;
+        }
+        if (inStock) {
+            Integer stock = product.getInteger("stock");
+            if (stock == null || stock <= 0) return false;
+        }
+        if (namePrefix != null) {
+            String name = product.getString("name");
+            if (name == null || !name.toLowerCase(Locale.ROOT).startsWith(namePrefix)) return false;
+        }
+        return true;
+    }
+
+    // The first page with no filters, which the catalog cache keeps encoded
+    public boolean isFirstPage() {
+        return afterId == 0 && limit == DEFAULT_LIMIT && minPrice == null && maxPrice == null
+            && !inStock && namePrefix == null;
+    }
+
+    /*
+     * Name prefix as a byte-order range, lower(name) ~>=~ from AND lower(name) ~<~ until,
+     * which the text_pattern_ops index serves even under a generic plan (LIKE $n is not).
+     * until is the prefix with its last code point incremented, so the range holds
+     * exactly the names starting with the prefix.
+     */
+    public String getNameFrom() {
+        return namePrefix;
+    }
+
+    public String getNameUntil() {
+        if (namePrefix == null) return null;
+        int last = namePrefix.codePointBefore(namePrefix.length());
+        int next = last == 0xD7FF ? 0xE000 : last + 1; // skip the surrogate range
+        if (next > Character.MAX_CODE_POINT) {
+            // Nothing sorts after U+10FFFF; append it instead, which only misses names continuing past it
+            return namePrefix + new String(Character.toChars(Character.MAX_CODE_POINT));
+        }
+        return namePrefix.substring(0, namePrefix.length() - Character.charCount(last)) + new String(Character.toChars(next));
+    }
+
+    public int getAfterId() { return afterId; }
+    public int getLimit() { return limit; }
+    public Double getMinPrice() { return minPrice; }
+    public Double getMaxPrice() { return maxPrice; }
+    public boolean isInStock() { return inStock; }
+    public String getNamePrefix() { return namePrefix; }
+}
@@ -0,0 +1,29 @@
+package com.example.model;
+
+// Units of a product held for a customer until confirmed, released or expired
+public class Reservation {
+    private final String id;
+    private final int customerId;
+    private final int productId;
+    private final int quantity;
+    private final long expiresAt;
+
+    public Reservation(String id, int customerId, int productId, int quantity, long expiresAt) {
+        this.id = id;
+        this.customerId = customerId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() { return id; }
+
+    public int getCustomerId() { return customerId; }
+
+    public int getProductId() { return productId; }
+
+    public int getQuantity() { return quantity; }
+
+    // Epoch milliseconds
+    public long getExpiresAt() { return expiresAt; }
+}
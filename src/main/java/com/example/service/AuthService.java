@@ -1,79 +1,70 @@
 package com.example.service;
 
-import org.mindrot.jbcrypt.BCrypt;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.example.model.Customer;
+import com.example.model.LoginAccount;
 import com.example.model.User;
 
 import io.vertx.core.Future;
-import io.vertx.core.Promise;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
 
 public class AuthService {
+    // One round trip for both kinds of login: a username or a customer email.
+    // Customers have no unique email, so only the oldest matching one can log in.
+    private static final String FIND_ACCOUNTS_QUERY =
+        "SELECT 'user' AS kind, id, password_hash, role_id, username, full_name AS name, email, " +
+        "NULL AS phone, NULL AS address, NULL::boolean AS portal_access " +
+        "FROM users WHERE username = $1 " +
+        "UNION ALL " +
+        "(SELECT 'customer', id, password, NULL, NULL, name, email, phone, address, portal_access " +
+        "FROM customers WHERE email = $1 ORDER BY id LIMIT 1)";
+
     private final PgPool client;
+    private final PasswordService passwordService;
 
-    public AuthService(PgPool client) {
+    public AuthService(PgPool client, PasswordService passwordService) {
         this.client = client;
+        this.passwordService = passwordService;
     }
 
-    public Future<User> getUserByUsername(String username) {
-        String query = "SELECT * FROM users WHERE username = $1";
-        return client.preparedQuery(query)
-                .execute(Tuple.of(username))
+    // Accounts matching the login, the system user (if any) ahead of the customer
+    public Future<List<LoginAccount>> findAccounts(String login) {
+        return client.preparedQuery(FIND_ACCOUNTS_QUERY)
+                .execute(Tuple.of(login))
                 .map(rows -> {
-                    if (rows.rowCount() == 0) return null;
-                    Row row = rows.iterator().next();
-                    return new User(
-                            row.getInteger("id"),
-                            row.getString("username"),
-                            row.getString("password_hash"),
-                            row.getInteger("role_id"),
-                            row.getString("full_name"),
-                            row.getString("email")
-                    );
+                    List<LoginAccount> accounts = new ArrayList<>(2);
+                    for (Row row : rows) {
+                        if ("user".equals(row.getString("kind"))) {
+                            accounts.add(0, LoginAccount.user(new User(
+                                    row.getInteger("id"),
+                                    row.getString("username"),
+                                    row.getString("password_hash"),
+                                    row.getInteger("role_id"),
+                                    row.getString("name"),
+                                    row.getString("email")
+                            )));
+                        } else {
+                            Customer customer = new Customer();
+                            customer.setId(row.getInteger("id"));
+                            customer.setName(row.getString("name"));
+                            customer.setEmail(row.getString("email"));
+                            customer.setPhone(row.getString("phone"));
+                            customer.setAddress(row.getString("address"));
+                            customer.setPortalAccess(row.getBoolean("portal_access"));
+                            customer.setPassword(row.getString("password_hash")); // store hash in password field
+                            accounts.add(LoginAccount.customer(customer));
+                        }
+                    }
+                    return accounts;
                 });
     }
 
-    public boolean checkPassword(String plainPassword, String hashedPassword) {
-        try {
-            if (hashedPassword == null) return false;
-
-            hashedPassword = hashedPassword.trim();
-
-            // Normalize bcrypt prefix to $2a$ for compatibility with jBCrypt
-            if (hashedPassword.startsWith("$2y$") || hashedPassword.startsWith("$2b$")) {
-                hashedPassword = "$2a$" + hashedPassword.substring(4);
-            }
-
-            return BCrypt.checkpw(plainPassword, hashedPassword);
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid bcrypt hash format: " + e.getMessage());
-            return false;
-        }
-    }
-
-    // NEW: Get customer by email
-    public Future<Customer> getCustomerByEmail(String email) {
-        Promise<Customer> promise = Promise.promise();
-        client.preparedQuery("SELECT id, name, email, phone, address, portal_access, password FROM customers WHERE email = $1")
-            .execute(Tuple.of(email), ar -> {
-                if (ar.succeeded() && ar.result().size() > 0) {
-                    Row row = ar.result().iterator().next();
-                    Customer customer = new Customer();
-                    customer.setId(row.getInteger("id"));
-                    customer.setName(row.getString("name"));
-                    customer.setEmail(row.getString("email"));
-                    customer.setPhone(row.getString("phone"));
-                    customer.setAddress(row.getString("address"));
-                    customer.setPortalAccess(row.getBoolean("portal_access"));
-                    customer.setPassword(row.getString("password")); // store hash in password field
-                    promise.complete(customer);
-                } else {
-                    promise.complete(null);
-                }
-            });
-        return promise.future();
+    // Verification runs on the password worker pool, never on the event loop
+    public Future<Boolean> checkPassword(String plainPassword, String hashedPassword) {
+        return passwordService.verify(plainPassword, hashedPassword);
     }
 }
@@ -1,147 +1,251 @@
 package com.example.service;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.example.model.Cart;
+import com.example.util.EntityVersions;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 
 public class CartService {
 
     private final PgPool client;
+    private final WriteBehindCartStore writeBehind;
+    private final EntityVersions versions;
 
-    public CartService(PgPool client) {
+    // writeBehind is null unless cart.writeBehind is enabled; then every call is served by it
+    public CartService(PgPool client, WriteBehindCartStore writeBehind, EntityVersions versions) {
         this.client = client;
+        this.writeBehind = writeBehind;
+        this.versions = versions;
     }
 
-    // Add item to cart
-    public Future<Void> addCartItem(Cart cart) {
-        Promise<Void> promise = Promise.promise();
-
-        // First check if item already exists in cart
-        String checkQuery = "SELECT id, quantity FROM cart WHERE customer_id = $1 AND product_id = $2";
-
-        client.preparedQuery(checkQuery)
-            .execute(Tuple.of(cart.getCustomerId(), cart.getProductId()))
-            .compose(rows -> {
-                if (rows.size() > 0) {
-                    // Item exists, update quantity
-                    Row row = rows.iterator().next();
-                    Integer existingId = row.getInteger("id");
-                    Integer existingQuantity = row.getInteger("quantity");
-                    Integer newQuantity = existingQuantity + (cart.getQuantity() != null ? cart.getQuantity() : 1);
-
-                    String updateQuery = "UPDATE cart SET quantity = $1 WHERE id = $2";
-                    return client.preparedQuery(updateQuery)
-                        .execute(Tuple.of(newQuantity, existingId))
-                        .mapEmpty();
-                } else {
-                    // Item doesn't exist, insert new
-                    String insertQuery = "INSERT INTO cart (customer_id, product_id, quantity, name, price, image_url) " +
-                                       "VALUES ($1, $2, $3, $4, $5, $6)";
-                    return client.preparedQuery(insertQuery)
-                        .execute(Tuple.of(
-                            cart.getCustomerId(),
-                            cart.getProductId(),
-                            cart.getQuantity() != null ? cart.getQuantity() : 1,
-                            cart.getName(),
-                            cart.getPrice(),
-                            cart.getImageUrl()
-                        ))
-                        .mapEmpty();
-                }
+    // ETag of a customer's cart; every write below bumps it once it went through, and
+    // lines show the current product name, price and image, so product changes move it too
+    public String cartTag(int customerId) {
+        return versions.etag(EntityVersions.cart(customerId), EntityVersions.PRODUCT_DETAILS);
+    }
+
+    // Adds to an existing line's quantity instead of inserting a duplicate (see cart_customer_product_key)
+    private static final String UPSERT_QUERY =
+        "INSERT INTO cart (customer_id, product_id, quantity, name, price, image_url) " +
+        "VALUES ($1, $2, $3, $4, $5, $6) " +
+        "ON CONFLICT (customer_id, product_id) DO UPDATE SET quantity = cart.quantity + EXCLUDED.quantity " +
+        "RETURNING id, quantity";
+
+    // Add item to cart in one atomic statement; returns the line id and its new quantity
+    public Future<Cart> addCartItem(Cart cart) {
+        if (writeBehind != null) {
+            return writeBehind.add(cart).onSuccess(line -> cartChanged(line.getCustomerId()));
+        }
+
+        Promise<Cart> promise = Promise.promise();
+
+        client.preparedQuery(UPSERT_QUERY)
+            .execute(upsertParams(cart))
+            .onSuccess(rows -> {
+                cartChanged(cart.getCustomerId());
+                promise.complete(withLine(cart, rows.iterator().next()));
             })
-            .onSuccess(res -> promise.complete())
             .onFailure(promise::fail);
 
         return promise.future();
     }
 
-    // Get cart by customer with product details
-    public Future<List<Cart>> getCartByCustomerId(Integer customerId) {
+    // Add several items with one pipelined batch of upserts
+    public Future<List<Cart>> addCartItems(List<Cart> items) {
+        if (writeBehind != null) {
+            return writeBehind.addAll(items).onSuccess(this::cartsChanged);
+        }
+
         Promise<List<Cart>> promise = Promise.promise();
 
-        // Join with products table to get latest product info
-        String query = "SELECT c.*, p.name as product_name, p.price as product_price, p.image_url as product_image_url " +
-                      "FROM cart c " +
-                      "LEFT JOIN products p ON c.product_id = p.id " +
-                      "WHERE c.customer_id = $1 " +
-                      "ORDER BY c.id";
+        List<Tuple> batch = new ArrayList<>(items.size());
+        for (Cart item : items) {
+            batch.add(upsertParams(item));
+        }
 
-        client.preparedQuery(query)
-            .execute(Tuple.of(customerId))
+        client.preparedQuery(UPSERT_QUERY)
+            .executeBatch(batch)
             .onSuccess(rows -> {
-                List<Cart> list = new ArrayList<>();
-                for (Row row : rows) {
-                    Cart cart = new Cart();
-                    cart.setId(row.getInteger("id"));
-                    cart.setCustomerId(row.getInteger("customer_id"));
-                    cart.setProductId(row.getInteger("product_id"));
-                    cart.setQuantity(row.getInteger("quantity"));
-
-                    // Use product details from products table if available
-                    // Fall back to cart stored values if not
-                    String productName = row.getString("product_name");
-                    if (productName != null) {
-                        cart.setName(productName);
-                    } else {
-                        cart.setName(row.getString("name"));
-                    }
-
-                    Double productPrice = row.getDouble("product_price");
-                    if (productPrice != null) {
-                        cart.setPrice(productPrice);
-                    } else {
-                        cart.setPrice(row.getDouble("price"));
-                    }
-
-                    String productImageUrl = row.getString("product_image_url");
-                    if (productImageUrl != null) {
-                        cart.setImageUrl(productImageUrl);
-                    } else {
-                        cart.setImageUrl(row.getString("image_url"));
-                    }
-
-                    list.add(cart);
+                List<Cart> added = new ArrayList<>(items.size());
+                RowSet<Row> result = rows;
+                for (Cart item : items) {
+                    added.add(withLine(item, result.iterator().next()));
+                    result = result.next();
                 }
-                promise.complete(list);
+                cartsChanged(added);
+                promise.complete(added);
             })
             .onFailure(promise::fail);
 
         return promise.future();
     }
 
+    private Tuple upsertParams(Cart cart) {
+        return Tuple.of(
+            cart.getCustomerId(),
+            cart.getProductId(),
+            cart.getQuantity() != null ? cart.getQuantity() : 1,
+            cart.getName(),
+            cart.getPrice(),
+            cart.getImageUrl()
+        );
+    }
+
+    private Cart withLine(Cart cart, Row row) {
+        cart.setId(row.getInteger("id"));
+        cart.setQuantity(row.getInteger("quantity"));
+        return cart;
+    }
+
+    // Body and total of GET /api/cart/:customerId
+    public static final class CartJson {
+        private final Buffer items;
+        private final BigDecimal total;
+
+        CartJson(Buffer items, BigDecimal total) {
+            this.items = items;
+            this.total = total;
+        }
+
+        // JSON array of the lines, each with its lineTotal
+        public Buffer getItems() { return items; }
+
+        public BigDecimal getTotal() { return total; }
+    }
+
+    // Latest product name, price and image where the product still exists, else what the line stored.
+    // Built by Postgres, so the rows are never mapped or encoded in Java.
+    private static final String CART_JSON_QUERY =
+        "SELECT COALESCE(json_agg(json_build_object(" +
+        "        'id', c.id, " +
+        "        'customerId', c.customer_id, " +
+        "        'productId', c.product_id, " +
+        "        'quantity', c.quantity, " +
+        "        'name', COALESCE(p.name, c.name), " +
+        "        'price', COALESCE(p.price, c.price), " +
+        "        'image_url', COALESCE(p.image_url, c.image_url), " +
+        "        'lineTotal', COALESCE(p.price, c.price) * c.quantity" +
+        "    ) ORDER BY c.id), '[]')::text AS items, " +
+        "    COALESCE(SUM(COALESCE(p.price, c.price) * c.quantity), 0.00) AS total " +
+        "FROM cart c " +
+        "LEFT JOIN products p ON c.product_id = p.id " +
+        "WHERE c.customer_id = $1";
+
+    private static final int MONEY_SCALE = 2;
+
+    // Get cart by customer with product details, as a JSON document
+    public Future<CartJson> getCartJson(Integer customerId) {
+        if (writeBehind != null) {
+            return writeBehind.getCart(customerId).map(CartService::toCartJson);
+        }
+
+        Promise<CartJson> promise = Promise.promise();
+
+        client.preparedQuery(CART_JSON_QUERY)
+            .execute(Tuple.of(customerId))
+            .onSuccess(rows -> {
+                Row row = rows.iterator().next();
+                promise.complete(new CartJson(
+                    Buffer.buffer(row.getString("items")),
+                    row.getBigDecimal("total")));
+            })
+            .onFailure(promise::fail);
+
+        return promise.future();
+    }
+
+    // Same fields and values as CART_JSON_QUERY, for carts held in memory
+    private static CartJson toCartJson(List<Cart> lines) {
+        JsonArray items = new JsonArray();
+        BigDecimal total = BigDecimal.ZERO.setScale(MONEY_SCALE);
+        for (Cart line : lines) {
+            BigDecimal price = line.getPrice() != null
+                ? BigDecimal.valueOf(line.getPrice()).setScale(MONEY_SCALE, RoundingMode.HALF_UP)
+                : null;
+            BigDecimal lineTotal = price != null ? price.multiply(BigDecimal.valueOf(line.getQuantity())) : null;
+            if (lineTotal != null) {
+                total = total.add(lineTotal);
+            }
+            items.add(new JsonObject()
+                .put("id", line.getId())
+                .put("customerId", line.getCustomerId())
+                .put("productId", line.getProductId())
+                .put("quantity", line.getQuantity())
+                .put("name", line.getName())
+                .put("price", price)
+                .put("image_url", line.getImageUrl())
+                .put("lineTotal", lineTotal));
+        }
+        return new CartJson(items.toBuffer(), total);
+    }
+
     // Update cart quantity
-    public Future<Void> updateCartItem(Integer id, Integer quantity) {
-        Promise<Void> promise = Promise.promise();
+    // Completes with false when there is no such line
+    public Future<Boolean> updateCartItem(Integer id, Integer quantity) {
+        Promise<Boolean> promise = Promise.promise();
 
         if (quantity <= 0) {
             // If quantity is 0 or negative, delete the item
             return deleteCartItem(id);
         }
 
-        String query = "UPDATE cart SET quantity = $1 WHERE id = $2";
+        if (writeBehind != null) {
+            return writeBehind.update(id, quantity).map(this::cartChanged);
+        }
+
+        String query = "UPDATE cart SET quantity = $1 WHERE id = $2 RETURNING customer_id";
         client.preparedQuery(query)
             .execute(Tuple.of(quantity, id))
-            .onSuccess(res -> promise.complete())
+            .onSuccess(rows -> {
+                rows.forEach(row -> cartChanged(row.getInteger("customer_id")));
+                promise.complete(rows.size() > 0);
+            })
             .onFailure(promise::fail);
 
         return promise.future();
     }
 
-    // Delete cart item
-    public Future<Void> deleteCartItem(Integer id) {
-        Promise<Void> promise = Promise.promise();
-        String query = "DELETE FROM cart WHERE id = $1";
+    // Delete cart item; completes with false when there is no such line
+    public Future<Boolean> deleteCartItem(Integer id) {
+        if (writeBehind != null) {
+            return writeBehind.delete(id).map(this::cartChanged);
+        }
+
+        Promise<Boolean> promise = Promise.promise();
+        String query = "DELETE FROM cart WHERE id = $1 RETURNING customer_id";
         client.preparedQuery(query)
             .execute(Tuple.of(id))
-            .onSuccess(res -> promise.complete())
+            .onSuccess(rows -> {
+                rows.forEach(row -> cartChanged(row.getInteger("customer_id")));
+                promise.complete(rows.size() > 0);
+            })
             .onFailure(promise::fail);
         return promise.future();
     }
+
+    // Null when the line did not exist, so nothing changed; returns whether it did
+    private boolean cartChanged(Integer customerId) {
+        if (customerId == null) {
+            return false;
+        }
+        versions.bump(EntityVersions.cart(customerId));
+        return true;
+    }
+
+    private void cartsChanged(List<Cart> lines) {
+        lines.stream().map(Cart::getCustomerId).distinct().forEach(this::cartChanged);
+    }
 }
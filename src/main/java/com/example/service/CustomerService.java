@@ -1,13 +1,14 @@
 package com.example.service;
 
-import org.mindrot.jbcrypt.BCrypt;
-
 import com.example.model.Customer;
+import com.example.model.LoginAccount;
+import com.example.util.RowStreamExporter;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
@@ -15,33 +16,37 @@ import io.vertx.sqlclient.Tuple;
 public class CustomerService {
 
     private final PgPool client;
+    private final PasswordService passwordService;
+    private final AuthService authService;
+    private final RowStreamExporter exporter;
 
-    public CustomerService(PgPool client) {
+    public CustomerService(PgPool client, PasswordService passwordService, AuthService authService) {
         this.client = client;
+        this.passwordService = passwordService;
+        this.authService = authService;
+        this.exporter = new RowStreamExporter(client);
     }
 
     // Register a new customer with hashed password
     public Future<Void> registerCustomer(Customer customer, String plainPassword) {
         Promise<Void> promise = Promise.promise();
 
-        // Hash password only if provided
-        String hashedPassword = null;
-        if (plainPassword != null && !plainPassword.isEmpty()) {
-            hashedPassword = BCrypt.hashpw(plainPassword, BCrypt.gensalt());
-        } else {
-            hashedPassword = ""; // store empty string if no password
-        }
+        // Hash password only if provided, store empty string otherwise
+        Future<String> hashedPassword = (plainPassword != null && !plainPassword.isEmpty())
+                ? passwordService.hash(plainPassword)
+                : Future.succeededFuture("");
 
         String query = "INSERT INTO customers (name, email, phone, address, portal_access, password) VALUES ($1, $2, $3, $4, $5, $6)";
-        client.preparedQuery(query)
-              .execute(Tuple.of(
-                      customer.getName(),
-                      customer.getEmail(),
-                      customer.getPhone(),
-                      customer.getAddress(),
-                      customer.getPortalAccess() != null ? customer.getPortalAccess() : false,
-                      hashedPassword
-              ))
+        hashedPassword
+              .compose(hash -> client.preparedQuery(query)
+                      .execute(Tuple.of(
+                              customer.getName(),
+                              customer.getEmail(),
+                              customer.getPhone(),
+                              customer.getAddress(),
+                              customer.getPortalAccess() != null ? customer.getPortalAccess() : false,
+                              hash
+                      )))
               .onSuccess(res -> promise.complete())
               .onFailure(promise::fail);
 
@@ -74,6 +79,12 @@ public class CustomerService {
         return promise.future();
     }
 
+    // Stream all customers (exclude password) without materializing the result set
+    public void exportCustomers(RoutingContext ctx) {
+        String query = "SELECT id, name, email, phone, address, portal_access AS \"portalAccess\" FROM customers ORDER BY id";
+        exporter.export(ctx, "customers", query, Tuple.tuple());
+    }
+
     // Update customer details
     public Future<Void> updateCustomer(Customer customer) {
         Promise<Void> promise = Promise.promise();
@@ -107,36 +118,43 @@ public class CustomerService {
         return promise.future();
     }
 
-    // Customer login
+    // Customer login, through the same lookup as /api/login
     public Future<JsonObject> login(String email, String plainPassword) {
         Promise<JsonObject> promise = Promise.promise();
 
-        String query = "SELECT * FROM customers WHERE email=$1";
-        client.preparedQuery(query)
-              .execute(Tuple.of(email))
-              .onSuccess(rows -> {
-                  if (!rows.iterator().hasNext()) {
-                      promise.fail("Invalid email or password");
-                      return;
+        authService.findAccounts(email)
+              .onSuccess(accounts -> {
+                  Customer customer = null;
+                  for (LoginAccount account : accounts) {
+                      if (account.isCustomer()) {
+                          customer = account.getCustomer();
+                          break;
+                      }
                   }
-
-                  Row row = rows.iterator().next();
-                  String hashedPassword = row.getString("password");
-
-                  if (!BCrypt.checkpw(plainPassword, hashedPassword)) {
+                  if (customer == null) {
                       promise.fail("Invalid email or password");
                       return;
                   }
 
-                  JsonObject customer = new JsonObject()
-                          .put("id", row.getInteger("id"))
-                          .put("name", row.getString("name"))
-                          .put("email", row.getString("email"))
-                          .put("phone", row.getString("phone"))
-                          .put("address", row.getString("address"))
-                          .put("portalAccess", row.getBoolean("portal_access"));
-
-                  promise.complete(customer);
+                  Customer found = customer;
+                  passwordService.verify(plainPassword, found.getPassword())
+                          .onSuccess(matches -> {
+                              if (!matches) {
+                                  promise.fail("Invalid email or password");
+                                  return;
+                              }
+
+                              JsonObject json = new JsonObject()
+                                      .put("id", found.getId())
+                                      .put("name", found.getName())
+                                      .put("email", found.getEmail())
+                                      .put("phone", found.getPhone())
+                                      .put("address", found.getAddress())
+                                      .put("portalAccess", found.getPortalAccess());
+
+                              promise.complete(json);
+                          })
+                          .onFailure(promise::fail);
               })
               .onFailure(promise::fail);
 
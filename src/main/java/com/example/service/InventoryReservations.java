@@ -0,0 +1,472 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.model.Order;
+import com.example.model.Reservation;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * In-memory stock reservations for flash-sale products, enabled with
+ * inventory.enabled for the product ids in inventory.products.
+ *
+ * Each of those products keeps a pool of units moved out of products.stock
+ * (and recorded in inventory_holds, see db/migrations/009_inventory_holds.sql).
+ * Reservations draw from the pool with compare-and-set on striped counters, so
+ * they take no row lock and need no database round trip. A unit sits in
+ * exactly one stripe or one reservation, so the pool cannot be oversold.
+ *
+ *   reserve  takes units from the pool for ttlSeconds
+ *   confirm  sells them: places an order for the customer, paid from
+ *            inventory_holds rather than products.stock; confirms that arrive
+ *            while one is being written are placed together in one statement
+ *   release  puts them back, as does expiry (checked every sweepIntervalMs)
+ *
+ * Every reconcileIntervalMs, pools under half of poolSize are refilled from
+ * products.stock and pools over twice poolSize give the surplus back, all
+ * products in one statement. A reservation the pool cannot cover triggers an
+ * early refill and is only refused if that does not help.
+ *
+ * Like the write-behind cart store, only one node may run this against a
+ * database. Open reservations do not survive a restart: held stock goes back
+ * to products.stock on startup.
+ */
+public class InventoryReservations implements Shareable {
+
+    private static final String RETURN_HOLDS =
+        "WITH returned AS (DELETE FROM inventory_holds RETURNING product_id, quantity) " +
+        "UPDATE products p SET stock = COALESCE(p.stock, 0) + r.quantity FROM returned r WHERE p.id = r.product_id";
+
+    // $1 product ids, $2 units wanted from stock (negative: given back); returns the units that moved
+    private static final String MOVE_STOCK =
+        "WITH moves AS (" +
+        "    SELECT * FROM unnest($1::int[], $2::int[]) AS m(product_id, delta)" +
+        "), locked AS (" +
+        "    SELECT p.id, CASE WHEN m.delta > 0 THEN LEAST(GREATEST(COALESCE(p.stock, 0), 0), m.delta) ELSE m.delta END AS moved" +
+        "    FROM products p JOIN moves m ON m.product_id = p.id" +
+        "    ORDER BY p.id" +
+        "    FOR UPDATE OF p" +
+        "), taken AS (" +
+        "    UPDATE products p SET stock = COALESCE(p.stock, 0) - l.moved FROM locked l WHERE p.id = l.id AND l.moved <> 0" +
+        "), held AS (" +
+        "    INSERT INTO inventory_holds (product_id, quantity)" +
+        "    SELECT id, moved FROM locked WHERE moved <> 0" +
+        "    ON CONFLICT (product_id) DO UPDATE SET quantity = inventory_holds.quantity + EXCLUDED.quantity" +
+        ") " +
+        "SELECT id, moved FROM locked";
+
+    /*
+     * $1 customer ids, $2 product ids, $3 quantities, one entry per confirmed
+     * reservation; returns one row per order placed, n being the entry's
+     * position. Order ids are drawn up front so every order can be joined to
+     * its item. Entries whose product no longer exists get no row and leave
+     * the holds alone.
+     */
+    private static final String PLACE_ORDERS =
+        "WITH sales AS (" +
+        "    SELECT s.n, s.customer_id, s.quantity, p.id AS product_id, p.name, p.price," +
+        "        nextval(pg_get_serial_sequence('orders', 'id'))::int AS order_id" +
+        "    FROM unnest($1::int[], $2::int[], $3::int[]) WITH ORDINALITY AS s(customer_id, product_id, quantity, n)" +
+        "    JOIN products p ON p.id = s.product_id" +
+        "), sold AS (" +
+        "    UPDATE inventory_holds h SET quantity = h.quantity - t.quantity" +
+        "    FROM (SELECT product_id, SUM(quantity) AS quantity FROM sales GROUP BY product_id) t" +
+        "    WHERE h.product_id = t.product_id" +
+        "), placed AS (" +
+        "    INSERT INTO orders (id, customer_id, total)" +
+        "    SELECT order_id, customer_id, price * quantity FROM sales" +
+        "    RETURNING id, customer_id, status, total, created_at" +
+        "), items AS (" +
+        "    INSERT INTO order_items (order_id, product_id, name, price, quantity)" +
+        "    SELECT order_id, product_id, name, price, quantity FROM sales" +
+        ") " +
+        "SELECT s.n, o.id, o.customer_id, o.status, o.total, o.created_at, s.product_id, s.name, s.price, s.quantity " +
+        "FROM sales s JOIN placed o ON o.id = s.order_id";
+
+    private static final long RELOAD_DELAY_MS = 5000;
+    // Ints per stripe: a 64-byte cache line each, so threads on different stripes never share one
+    private static final int PAD = 16;
+
+    private static final class Pool {
+        final int productId;
+        final int stripes;
+        final AtomicIntegerArray cells;
+        // Largest reservation the pool could not cover since the last reconcile
+        final AtomicInteger shortfall = new AtomicInteger();
+        final AtomicInteger reserved = new AtomicInteger();
+        final LongAdder sold = new LongAdder();
+
+        Pool(int productId, int stripes) {
+            this.productId = productId;
+            this.stripes = stripes;
+            this.cells = new AtomicIntegerArray(stripes * PAD);
+        }
+
+        // All or nothing
+        boolean take(int quantity) {
+            int taken = withdraw(quantity);
+            if (taken < quantity) {
+                deposit(taken);
+                return false;
+            }
+            return true;
+        }
+
+        // Up to max units, starting at the calling thread's own stripe
+        int withdraw(int max) {
+            int start = home();
+            int taken = 0;
+            for (int i = 0; i < stripes && taken < max; i++) {
+                int cell = ((start + i) % stripes) * PAD;
+                while (taken < max) {
+                    int current = cells.get(cell);
+                    if (current == 0) {
+                        break;
+                    }
+                    int n = Math.min(current, max - taken);
+                    if (cells.compareAndSet(cell, current, current - n)) {
+                        taken += n;
+                    }
+                }
+            }
+            return taken;
+        }
+
+        void deposit(int quantity) {
+            if (quantity > 0) {
+                cells.getAndAdd(home() * PAD, quantity);
+            }
+        }
+
+        // Refills go to every stripe evenly
+        void spread(int quantity) {
+            int each = quantity / stripes;
+            int rest = quantity % stripes;
+            for (int i = 0; i < stripes; i++) {
+                int n = each + (i < rest ? 1 : 0);
+                if (n > 0) {
+                    cells.getAndAdd(i * PAD, n);
+                }
+            }
+        }
+
+        int available() {
+            int sum = 0;
+            for (int i = 0; i < stripes; i++) {
+                sum += cells.get(i * PAD);
+            }
+            return sum;
+        }
+
+        private int home() {
+            return (int) (Thread.currentThread().getId() % stripes);
+        }
+    }
+
+    private final Vertx vertx;
+    private final PgPool client;
+    private final Map<Integer, Pool> pools = new HashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final int poolSize;
+    private final long ttlMs;
+    private final Promise<Void> ready = Promise.promise();
+
+    private Future<Void> lastReconcile = Future.succeededFuture();
+    private Future<Void> queuedReconcile;
+
+    // Confirmations waiting for the next PLACE_ORDERS, in the same order as their promises
+    private List<Reservation> pendingSales = new ArrayList<>();
+    private List<Promise<Order>> pendingConfirms = new ArrayList<>();
+    private boolean placing;
+
+    public static InventoryReservations shared(Vertx vertx, PgPool client, JsonObject config) {
+        LocalMap<String, InventoryReservations> instances = vertx.sharedData().getLocalMap(InventoryReservations.class.getName());
+        return instances.computeIfAbsent("inventory", name -> {
+            InventoryReservations inventory = new InventoryReservations(vertx, client, config);
+            inventory.load();
+            vertx.setPeriodic(config.getLong("sweepIntervalMs", 1000L), id -> inventory.expire());
+            vertx.setPeriodic(config.getLong("reconcileIntervalMs", 1000L), id -> inventory.reconcile());
+            return inventory;
+        });
+    }
+
+    private InventoryReservations(Vertx vertx, PgPool client, JsonObject config) {
+        this.vertx = vertx;
+        this.client = client;
+        this.poolSize = config.getInteger("poolSize", 100);
+        this.ttlMs = config.getLong("ttlSeconds", 600L) * 1000;
+        int stripes = config.getInteger("stripes", Runtime.getRuntime().availableProcessors());
+        for (int productId : productIds(config.getValue("products"))) {
+            pools.put(productId, new Pool(productId, Math.max(1, stripes)));
+        }
+    }
+
+    // A JSON array, or a comma separated list when set with -Dinventory.products=1,2,3
+    private static List<Integer> productIds(Object products) {
+        List<Integer> ids = new ArrayList<>();
+        if (products instanceof JsonArray) {
+            for (Object id : (JsonArray) products) {
+                ids.add(((Number) id).intValue());
+            }
+        } else if (products != null) {
+            for (String id : products.toString().split(",")) {
+                if (!id.isBlank()) {
+                    ids.add(Integer.parseInt(id.trim()));
+                }
+            }
+        }
+        return ids;
+    }
+
+    public Future<Reservation> reserve(int customerId, int productId, int quantity) {
+        Pool pool = pools.get(productId);
+        if (pool == null) {
+            return Future.failedFuture("Product " + productId + " is not managed by inventory reservations");
+        }
+        if (quantity <= 0) {
+            return Future.failedFuture("Quantity must be positive");
+        }
+        return ready.future().compose(v -> {
+            if (pool.take(quantity)) {
+                return Future.succeededFuture(hold(pool, customerId, quantity));
+            }
+            pool.shortfall.accumulateAndGet(quantity, Math::max);
+            return reconcile().compose(refilled -> pool.take(quantity)
+                ? Future.succeededFuture(hold(pool, customerId, quantity))
+                : Future.failedFuture("Insufficient stock for product " + productId));
+        });
+    }
+
+    private Reservation hold(Pool pool, int customerId, int quantity) {
+        Reservation reservation = new Reservation(UUID.randomUUID().toString(), customerId, pool.productId, quantity,
+            System.currentTimeMillis() + ttlMs);
+        pool.reserved.addAndGet(quantity);
+        reservations.put(reservation.getId(), reservation);
+        return reservation;
+    }
+
+    // The order placed for the reservation's customer
+    public Future<Order> confirm(String id) {
+        Reservation reservation = reservations.remove(id);
+        if (reservation == null) {
+            return Future.failedFuture("Reservation not found");
+        }
+        Pool pool = pools.get(reservation.getProductId());
+        pool.reserved.addAndGet(-reservation.getQuantity());
+        return placeOrder(reservation)
+            .onSuccess(order -> pool.sold.add(reservation.getQuantity()))
+            .recover(err -> {
+                // Not sold after all: hold it again so the confirm can be retried before it expires
+                pool.reserved.addAndGet(reservation.getQuantity());
+                reservations.put(reservation.getId(), reservation);
+                return Future.failedFuture(err);
+            });
+    }
+
+    public Future<Void> release(String id) {
+        Reservation reservation = reservations.remove(id);
+        if (reservation == null) {
+            return Future.failedFuture("Reservation not found");
+        }
+        giveBack(reservation);
+        return Future.succeededFuture();
+    }
+
+    private void giveBack(Reservation reservation) {
+        Pool pool = pools.get(reservation.getProductId());
+        pool.reserved.addAndGet(-reservation.getQuantity());
+        pool.deposit(reservation.getQuantity());
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.getExpiresAt() <= now && reservations.remove(reservation.getId(), reservation)) {
+                giveBack(reservation);
+            }
+        }
+    }
+
+    // Per product: units in the pool, held by open reservations and sold so far
+    public JsonArray stats() {
+        JsonArray stats = new JsonArray();
+        for (Pool pool : pools.values()) {
+            stats.add(new JsonObject()
+                .put("productId", pool.productId)
+                .put("available", pool.available())
+                .put("reserved", pool.reserved.get())
+                .put("sold", pool.sold.sum()));
+        }
+        return stats;
+    }
+
+    // Group commit: one PLACE_ORDERS in flight, confirms arriving meanwhile go into the next one
+    private Future<Order> placeOrder(Reservation reservation) {
+        Promise<Order> promise = Promise.promise();
+        synchronized (this) {
+            pendingSales.add(reservation);
+            pendingConfirms.add(promise);
+            if (placing) {
+                return promise.future();
+            }
+            placing = true;
+        }
+        writeOrders();
+        return promise.future();
+    }
+
+    private void writeOrders() {
+        List<Reservation> sales;
+        List<Promise<Order>> waiting;
+        synchronized (this) {
+            if (pendingConfirms.isEmpty()) {
+                placing = false;
+                return;
+            }
+            sales = pendingSales;
+            waiting = pendingConfirms;
+            pendingSales = new ArrayList<>();
+            pendingConfirms = new ArrayList<>();
+        }
+
+        Integer[] customerIds = new Integer[sales.size()];
+        Integer[] productIds = new Integer[sales.size()];
+        Integer[] quantities = new Integer[sales.size()];
+        for (int i = 0; i < sales.size(); i++) {
+            customerIds[i] = sales.get(i).getCustomerId();
+            productIds[i] = sales.get(i).getProductId();
+            quantities[i] = sales.get(i).getQuantity();
+        }
+        client.preparedQuery(PLACE_ORDERS)
+            .execute(Tuple.tuple()
+                .addArrayOfInteger(customerIds)
+                .addArrayOfInteger(productIds)
+                .addArrayOfInteger(quantities))
+            .onComplete(ar -> {
+                if (ar.failed()) {
+                    waiting.forEach(promise -> promise.fail(ar.cause()));
+                } else {
+                    Order[] orders = new Order[sales.size()];
+                    for (Row row : ar.result()) {
+                        orders[row.getLong("n").intValue() - 1] = OrderService.toOrders(List.of(row), null).get(0);
+                    }
+                    for (int i = 0; i < orders.length; i++) {
+                        if (orders[i] != null) {
+                            waiting.get(i).complete(orders[i]);
+                        } else {
+                            waiting.get(i).fail("Product " + sales.get(i).getProductId() + " no longer exists");
+                        }
+                    }
+                }
+                writeOrders();
+            });
+    }
+
+    /**
+     * Refill or trim every pool. Runs one at a time; callers arriving while a
+     * run is already queued share that run instead of queueing another.
+     */
+    public synchronized Future<Void> reconcile() {
+        if (queuedReconcile != null) {
+            return queuedReconcile;
+        }
+        Promise<Void> run = Promise.promise();
+        queuedReconcile = run.future();
+        lastReconcile.onComplete(previous -> {
+            synchronized (this) {
+                queuedReconcile = null;
+            }
+            ready.future().compose(v -> rebalance()).onComplete(run);
+        });
+        lastReconcile = run.future();
+        return lastReconcile;
+    }
+
+    private Future<Void> rebalance() {
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        Map<Integer, Integer> givenBack = new HashMap<>();
+
+        for (Pool pool : pools.values()) {
+            int available = pool.available();
+            int shortfall = pool.shortfall.getAndSet(0);
+            if (available < poolSize / 2 || shortfall > available) {
+                ids.add(pool.productId);
+                deltas.add(Math.max(poolSize, shortfall) - available);
+            } else if (available > 2 * poolSize) {
+                int surplus = pool.withdraw(available - poolSize);
+                if (surplus > 0) {
+                    ids.add(pool.productId);
+                    deltas.add(-surplus);
+                    givenBack.put(pool.productId, surplus);
+                }
+            }
+        }
+
+        if (ids.isEmpty()) {
+            return Future.succeededFuture();
+        }
+
+        return client.preparedQuery(MOVE_STOCK)
+            .execute(Tuple.tuple()
+                .addArrayOfInteger(ids.toArray(new Integer[0]))
+                .addArrayOfInteger(deltas.toArray(new Integer[0])))
+            .onSuccess(rows -> {
+                Set<Integer> moved = new HashSet<>();
+                for (Row row : rows) {
+                    int productId = row.getInteger("id");
+                    moved.add(productId);
+                    int units = row.getInteger("moved");
+                    if (units > 0) {
+                        pools.get(productId).spread(units);
+                    }
+                }
+                // Surplus of a product that no longer exists stays in its pool
+                givenBack.forEach((productId, units) -> {
+                    if (!moved.contains(productId)) {
+                        pools.get(productId).spread(units);
+                    }
+                });
+            })
+            .onFailure(err -> {
+                System.err.println("Inventory reconcile failed: " + err.getMessage());
+                givenBack.forEach((productId, units) -> pools.get(productId).spread(units));
+            })
+            .mapEmpty();
+    }
+
+    // Reservations wait until stock held by a previous run is back in products.stock
+    private void load() {
+        client.query(RETURN_HOLDS)
+            .execute()
+            .onSuccess(rows -> {
+                System.out.println("Inventory reservations ready for " + pools.size() + " product(s)");
+                ready.complete();
+                reconcile();
+            })
+            .onFailure(err -> {
+                System.err.println("Failed to return held inventory, retrying: " + err.getMessage());
+                vertx.setTimer(RELOAD_DELAY_MS, id -> load());
+            });
+    }
+}
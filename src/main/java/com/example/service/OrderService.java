@@ -0,0 +1,183 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.model.Order;
+import com.example.model.OrderItem;
+import com.example.util.EntityVersions;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Turns a customer's cart into an order.
+ *
+ * The whole checkout is a single statement, so it is atomic on its own and
+ * costs one round trip: lock the cart lines, lock their products in id order
+ * (two checkouts sharing products cannot deadlock), check every line against
+ * the locked stock, then decrement stock, insert the order with all its lines
+ * and clear the cart. If a product ran out or no longer exists none of the
+ * writes happen. Without an explicit transaction the product locks are
+ * released as soon as the statement ends rather than one more round trip
+ * later, which is what bounds throughput on popular products.
+ */
+public class OrderService {
+
+    private static final String CHECKOUT_QUERY =
+        "WITH lines AS (" +
+        "    SELECT id, product_id, quantity FROM cart WHERE customer_id = $1 ORDER BY id FOR UPDATE" +
+        "), locked AS (" +
+        // Rows locked FOR UPDATE come back at their latest committed version, so stock is current
+        "    SELECT p.id, p.name, p.price, p.stock, l.quantity" +
+        "    FROM products p JOIN lines l ON l.product_id = p.id" +
+        "    ORDER BY p.id" +
+        "    FOR UPDATE OF p" +
+        "), verdict AS (" +
+        "    SELECT (SELECT COUNT(*) FROM lines) AS line_count, COUNT(*) AS product_count," +
+        "        array_agg(id ORDER BY id) FILTER (WHERE stock IS NULL OR stock < quantity) AS short_ids" +
+        "    FROM locked" +
+        "), checked AS (" +
+        "    SELECT line_count > 0 AND product_count = line_count AND short_ids IS NULL AS placeable FROM verdict" +
+        "), taken AS (" +
+        "    UPDATE products p SET stock = p.stock - k.quantity" +
+        "    FROM locked k, checked" +
+        "    WHERE p.id = k.id AND checked.placeable" +
+        "), placed AS (" +
+        "    INSERT INTO orders (customer_id, total)" +
+        "    SELECT $1, SUM(k.price * k.quantity) FROM locked k, checked WHERE checked.placeable HAVING COUNT(*) > 0" +
+        "    RETURNING id, status, total, created_at" +
+        "), items AS (" +
+        "    INSERT INTO order_items (order_id, product_id, name, price, quantity)" +
+        "    SELECT o.id, k.id, k.name, k.price, k.quantity FROM placed o CROSS JOIN locked k" +
+        "    RETURNING product_id, name, price, quantity" +
+        "), cleared AS (" +
+        "    DELETE FROM cart c USING lines l, checked WHERE c.id = l.id AND checked.placeable" +
+        ") " +
+        // Always at least one row, carrying the verdict
+        "SELECT o.id, o.status, o.total, o.created_at, i.product_id, i.name, i.price, i.quantity, " +
+        "    v.line_count, v.product_count, v.short_ids, " +
+        "    (SELECT array_agg(id ORDER BY id) FROM lines) AS line_ids, " +
+        "    (SELECT array_agg(quantity ORDER BY id) FROM lines) AS line_quantities " +
+        "FROM verdict v " +
+        "LEFT JOIN placed o ON true " +
+        "LEFT JOIN items i ON true " +
+        "ORDER BY i.product_id";
+
+    private static final String ORDER_COLUMNS =
+        "o.id, o.customer_id, o.status, o.total, o.created_at, i.product_id, i.name, i.price, i.quantity";
+
+    private static final String ORDER_QUERY =
+        "SELECT " + ORDER_COLUMNS + " FROM orders o " +
+        "LEFT JOIN order_items i ON i.order_id = o.id " +
+        "WHERE o.id = $1 ORDER BY i.product_id";
+
+    private static final String CUSTOMER_ORDERS_QUERY =
+        "SELECT " + ORDER_COLUMNS + " FROM orders o " +
+        "LEFT JOIN order_items i ON i.order_id = o.id " +
+        "WHERE o.customer_id = $1 ORDER BY o.id DESC, i.product_id";
+
+    private final PgPool client;
+    private final WriteBehindCartStore cartStore;
+    private final EntityVersions versions;
+
+    // cartStore is null unless cart.writeBehind is enabled; then it is flushed before every checkout
+    public OrderService(PgPool client, WriteBehindCartStore cartStore, EntityVersions versions) {
+        this.client = client;
+        this.cartStore = cartStore;
+        this.versions = versions;
+    }
+
+    public Future<Order> checkout(int customerId) {
+        Promise<Order> promise = Promise.promise();
+
+        Future<Void> cartWritten = cartStore != null ? cartStore.flush() : Future.succeededFuture();
+
+        cartWritten
+            .compose(v -> client.preparedQuery(CHECKOUT_QUERY).execute(Tuple.of(customerId)))
+            .onSuccess(rows -> {
+                Row first = rows.iterator().next();
+                if (first.getLong("line_count") == 0) {
+                    promise.fail("Cart is empty");
+                    return;
+                }
+                if (first.getLong("product_count") < first.getLong("line_count")) {
+                    promise.fail("Cart contains products that no longer exist");
+                    return;
+                }
+                Integer[] shortIds = first.getArrayOfIntegers("short_ids");
+                if (shortIds != null) {
+                    promise.fail("Insufficient stock for product(s) " + Arrays.toString(shortIds));
+                    return;
+                }
+
+                if (cartStore != null) {
+                    cartStore.checkedOut(customerId, first.getArrayOfIntegers("line_ids"),
+                        first.getArrayOfIntegers("line_quantities"));
+                }
+                versions.bump(EntityVersions.cart(customerId));
+                promise.complete(toOrders(rows, customerId).get(0));
+            })
+            .onFailure(promise::fail);
+
+        return promise.future();
+    }
+
+    // Order with its items, or null if there is no such order
+    public Future<Order> getOrder(int id) {
+        Promise<Order> promise = Promise.promise();
+
+        client.preparedQuery(ORDER_QUERY)
+            .execute(Tuple.of(id))
+            .onSuccess(rows -> {
+                List<Order> orders = toOrders(rows, null);
+                promise.complete(orders.isEmpty() ? null : orders.get(0));
+            })
+            .onFailure(promise::fail);
+
+        return promise.future();
+    }
+
+    // Newest first
+    public Future<List<Order>> getOrdersByCustomerId(int customerId) {
+        Promise<List<Order>> promise = Promise.promise();
+
+        client.preparedQuery(CUSTOMER_ORDERS_QUERY)
+            .execute(Tuple.of(customerId))
+            .onSuccess(rows -> promise.complete(toOrders(rows, null)))
+            .onFailure(promise::fail);
+
+        return promise.future();
+    }
+
+    // One row per order item, grouped back into orders in row order
+    static List<Order> toOrders(Iterable<Row> rows, Integer customerId) {
+        Map<Integer, Order> orders = new LinkedHashMap<>();
+        for (Row row : rows) {
+            Order order = orders.computeIfAbsent(row.getInteger("id"), id -> {
+                Order created = new Order();
+                created.setId(id);
+                created.setCustomerId(customerId != null ? customerId : row.getInteger("customer_id"));
+                created.setStatus(row.getString("status"));
+                created.setTotal(row.getDouble("total"));
+                created.setCreatedAt(row.getOffsetDateTime("created_at").toString());
+                return created;
+            });
+            if (row.getInteger("product_id") != null) {
+                order.getItems().add(new OrderItem(
+                    row.getInteger("product_id"),
+                    row.getString("name"),
+                    row.getDouble("price"),
+                    row.getInteger("quantity")
+                ));
+            }
+        }
+        return new ArrayList<>(orders.values());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated worker pool so that
+ * logins and registrations never block an event-loop thread.
+ *
+ * The number of tasks waiting for a worker is capped; once the cap is reached
+ * new requests fail fast with a {@link PasswordServiceBusyException} and
+ * callers answer 503.
+ */
+public class PasswordService implements Shareable {
+
+    public static final String BUSY_MESSAGE = "Password service is busy, please retry";
+
+    private static final String POOL_NAME = "password-hasher";
+    private static final int DEFAULT_COST = 10;
+
+    private final WorkerExecutor executor;
+    private final int poolSize;
+    private final int maxQueueSize;
+    private final int cost;
+
+    // Counters used to size the pool under load
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalHashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    // One instance per Vert.x so that all verticle instances share the queue limit and counters
+    public static PasswordService shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, PasswordService> services = vertx.sharedData().getLocalMap(PasswordService.class.getName());
+        return services.computeIfAbsent(POOL_NAME, name -> new PasswordService(vertx, config));
+    }
+
+    public PasswordService(Vertx vertx, JsonObject config) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.poolSize = config.getInteger("poolSize", cores);
+        this.maxQueueSize = config.getInteger("maxQueueSize", poolSize * 32);
+        this.cost = config.getInteger("cost", DEFAULT_COST);
+        this.executor = vertx.createSharedWorkerExecutor(POOL_NAME, poolSize);
+    }
+
+    // Hash a plain password with the configured cost factor
+    public Future<String> hash(String plainPassword) {
+        if (plainPassword == null) {
+            return Future.failedFuture("Password is required");
+        }
+        return submit(() -> BCrypt.hashpw(plainPassword, BCrypt.gensalt(cost)));
+    }
+
+    // Check a plain password against a stored bcrypt hash
+    public Future<Boolean> verify(String plainPassword, String hashedPassword) {
+        if (plainPassword == null || hashedPassword == null || hashedPassword.isBlank()) {
+            return Future.succeededFuture(false);
+        }
+
+        String normalized = normalize(hashedPassword);
+        return submit(() -> {
+            try {
+                return BCrypt.checkpw(plainPassword, normalized);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid bcrypt hash format: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    public static boolean isBusy(Throwable err) {
+        return err instanceof PasswordServiceBusyException;
+    }
+
+    public JsonObject metrics() {
+        long done = completed.sum();
+        return new JsonObject()
+            .put("poolSize", poolSize)
+            .put("maxQueueSize", maxQueueSize)
+            .put("cost", cost)
+            .put("queueDepth", queued.get())
+            .put("active", active.get())
+            .put("completed", done)
+            .put("rejected", rejected.sum())
+            .put("avgWaitMillis", done == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / done)
+            .put("avgHashMillis", done == 0 ? 0.0 : totalHashNanos.sum() / 1_000_000.0 / done)
+            .put("maxHashMillis", maxHashNanos.get() / 1_000_000.0);
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        if (queued.incrementAndGet() > maxQueueSize) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return Future.failedFuture(new PasswordServiceBusyException());
+        }
+
+        long submittedAt = System.nanoTime();
+        return executor.executeBlocking(() -> {
+            long startedAt = System.nanoTime();
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                return task.call();
+            } finally {
+                long hashNanos = System.nanoTime() - startedAt;
+                active.decrementAndGet();
+                completed.increment();
+                totalWaitNanos.add(startedAt - submittedAt);
+                totalHashNanos.add(hashNanos);
+                maxHashNanos.accumulateAndGet(hashNanos, Math::max);
+            }
+        }, false);
+    }
+
+    // Normalize bcrypt prefix to $2a$ for compatibility with jBCrypt
+    private static String normalize(String hashedPassword) {
+        String hash = hashedPassword.trim();
+        if (hash.startsWith("$2y$") || hash.startsWith("$2b$")) {
+            hash = "$2a$" + hash.substring(4);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.service;
+
+// The password hashing queue is full; callers answer 503 so clients back off and retry
+public class PasswordServiceBusyException extends RuntimeException {
+
+    public PasswordServiceBusyException() {
+        super(PasswordService.BUSY_MESSAGE, null, false, false);
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.model.ProductFilter;
+import com.example.util.EntityVersions;
+import com.example.util.PgNotificationListener;
+import com.example.util.PrecompressedBody;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * In-memory copy of the products table serving /api/products/public.
+ *
+ * Local writes are applied from the rows returned by ProductService; writes
+ * from other nodes arrive through the products_changed NOTIFY channel (see
+ * db/migrations/001_products_notify.sql and 011_products_notify_txid.sql).
+ * Each local write records its transaction id, so its own notification is
+ * recognised and skipped instead of re-reading the row. The first unfiltered page is
+ * encoded once per change, so reads only hand out the same body, and its gzip
+ * and deflate variants are compressed once per change too. Encoding runs on a
+ * worker and is coalesced: changes arriving while one rebuild is queued share
+ * it, and the previous page is served until the new one is ready. Every rebuild bumps the
+ * products version, so product ETags follow exactly what the cache holds.
+ * Changes to the fields carts show bump the product details version as well,
+ * which cart ETags include; stock-only changes leave carts alone.
+ */
+public class ProductCatalogCache implements Shareable {
+
+    public static final String CHANNEL = "products_changed";
+
+    private static final String SELECT_ALL = "SELECT " + ProductService.PRODUCT_COLUMNS + " FROM products ORDER BY id";
+    private static final String SELECT_ONE = "SELECT " + ProductService.PRODUCT_COLUMNS + " FROM products WHERE id = $1";
+
+    // Fields carts read from products instead of their own copies (see CartService)
+    private static final String[] CART_FIELDS = { "name", "price", "image_url" };
+    private static final long ANY_SNAPSHOT = -1;
+
+    private final Vertx vertx;
+    private final PgPool client;
+    private final EntityVersions versions;
+    private final ConcurrentNavigableMap<Integer, JsonObject> products = new ConcurrentSkipListMap<>();
+    // product id -> transaction id of a local write whose notification has not come back yet
+    private final Map<Integer, Long> appliedTxids = new ConcurrentHashMap<>();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    // One set per reload in flight: ids written since its snapshot was requested
+    private final List<Set<Integer>> reloadsInFlight = new CopyOnWriteArrayList<>();
+    // Orders map writes against applying a snapshot; writes are rare, reads never take it
+    private final Object writeLock = new Object();
+    // Snapshots applied so far, so a refresh that read before one of them reads again
+    private final AtomicLong snapshots = new AtomicLong();
+
+    // The first page of GET /api/products/public with no parameters
+    public static final class FirstPage {
+        private final PrecompressedBody body;
+        private final String nextCursor;
+
+        FirstPage(PrecompressedBody body, String nextCursor) {
+            this.body = body;
+            this.nextCursor = nextCursor;
+        }
+
+        public PrecompressedBody getBody() { return body; }
+
+        // null when the whole catalog fits on this page
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    private volatile FirstPage firstPage;
+    private volatile boolean loaded;
+
+    public static ProductCatalogCache shared(Vertx vertx, PgPool client, PgNotificationListener notifications,
+                                             EntityVersions versions) {
+        LocalMap<String, ProductCatalogCache> caches = vertx.sharedData().getLocalMap(ProductCatalogCache.class.getName());
+        return caches.computeIfAbsent("products", name -> {
+            ProductCatalogCache cache = new ProductCatalogCache(vertx, client, versions);
+            notifications.listen(CHANNEL, cache::onNotification, cache::reload);
+            cache.reload();
+            return cache;
+        });
+    }
+
+    ProductCatalogCache(Vertx vertx, PgPool client, EntityVersions versions) {
+        this.vertx = vertx;
+        this.client = client;
+        this.versions = versions;
+    }
+
+    public boolean isLoaded() {
+        return loaded && firstPage != null;
+    }
+
+    // Pre-encoded first page, null until the first load completes
+    public FirstPage getFirstPage() {
+        return firstPage;
+    }
+
+    public JsonObject get(int id) {
+        return products.get(id);
+    }
+
+    // Up to limit + 1 matching products after the cursor; the extra one signals another page
+    public List<JsonObject> page(ProductFilter filter) {
+        List<JsonObject> page = new ArrayList<>();
+        for (JsonObject product : products.tailMap(filter.getAfterId(), false).values()) {
+            if (filter.matches(product)) {
+                page.add(product);
+                if (page.size() > filter.getLimit()) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    /*
+     * Writes applied while the snapshot is in flight may be newer than it, so
+     * their ids keep what the map holds and are re-read once it is applied.
+     */
+    public Future<Void> reload() {
+        Set<Integer> touched = ConcurrentHashMap.newKeySet();
+        reloadsInFlight.add(touched);
+        return client.query(SELECT_ALL)
+            .execute()
+            .onFailure(err -> reloadsInFlight.remove(touched))
+            .onSuccess(rows -> {
+                ConcurrentNavigableMap<Integer, JsonObject> fresh = new ConcurrentSkipListMap<>();
+                for (Row row : rows) {
+                    JsonObject product = row.toJson();
+                    fresh.put(product.getInteger("id"), product);
+                }
+                Set<Integer> written;
+                synchronized (writeLock) {
+                    reloadsInFlight.remove(touched);
+                    written = new HashSet<>(touched);
+                    products.keySet().removeIf(id -> !fresh.containsKey(id) && !written.contains(id));
+                    fresh.forEach((id, product) -> {
+                        if (!written.contains(id)) {
+                            products.put(id, product);
+                        }
+                    });
+                    snapshots.incrementAndGet();
+                }
+                versions.bump(EntityVersions.PRODUCT_DETAILS);
+                // Notifications may have been missed, so pending ones can no longer be matched reliably
+                appliedTxids.clear();
+                loaded = true;
+                changed();
+                written.forEach(this::refresh);
+            })
+            .onFailure(err -> System.err.println("Failed to load product catalog: " + err.getMessage()))
+            .mapEmpty();
+    }
+
+    // Apply a product written by this node in transaction txid (txid_current() of the write)
+    public void put(JsonObject product, long txid) {
+        appliedTxids.put(product.getInteger("id"), txid);
+        put(product);
+    }
+
+    public void remove(int id, long txid) {
+        appliedTxids.put(id, txid);
+        remove(id);
+    }
+
+    private void put(JsonObject product) {
+        write(product.getInteger("id"), product, ANY_SNAPSHOT);
+    }
+
+    private void remove(int id) {
+        write(id, null, ANY_SNAPSHOT);
+    }
+
+    /*
+     * Put product, or remove the id if it is null. With a snapshot count the
+     * write is skipped (returns false) once a newer snapshot has been applied.
+     */
+    private boolean write(int id, JsonObject product, long snapshot) {
+        JsonObject previous;
+        synchronized (writeLock) {
+            if (snapshot != ANY_SNAPSHOT && snapshots.get() != snapshot) {
+                return false;
+            }
+            touched(id);
+            previous = product != null ? products.put(id, product) : products.remove(id);
+        }
+        if (product == null && previous == null) {
+            return true;
+        }
+        if (previous == null || product == null || !sameCartFields(previous, product)) {
+            versions.bump(EntityVersions.PRODUCT_DETAILS);
+        }
+        changed();
+        return true;
+    }
+
+    private void touched(int id) {
+        for (Set<Integer> touched : reloadsInFlight) {
+            touched.add(id);
+        }
+    }
+
+    private static boolean sameCartFields(JsonObject a, JsonObject b) {
+        for (String field : CART_FIELDS) {
+            if (!Objects.equals(a.getValue(field), b.getValue(field))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Re-read a single product, e.g. after a change made by another node
+    public Future<Void> refresh(int id) {
+        return read(id)
+            .onFailure(err -> System.err.println("Failed to refresh product " + id + ": " + err.getMessage()));
+    }
+
+    private Future<Void> read(int id) {
+        long snapshot = snapshots.get();
+        return client.preparedQuery(SELECT_ONE)
+            .execute(Tuple.of(id))
+            .compose(rows -> {
+                JsonObject product = rows.iterator().hasNext() ? rows.iterator().next().toJson() : null;
+                // A snapshot applied since the read may be newer than this row, so read again
+                return write(id, product, snapshot) ? Future.<Void>succeededFuture() : read(id);
+            });
+    }
+
+    // Payload: {"op": "INSERT|UPDATE|DELETE", "id": 42, "txid": 1234}
+    private void onNotification(String payload) {
+        try {
+            JsonObject event = new JsonObject(payload);
+            int id = event.getInteger("id");
+            Long txid = event.getLong("txid");
+            if (txid != null && appliedTxids.remove(id, txid)) {
+                return; // our own write, already applied
+            }
+            if ("DELETE".equals(event.getString("op"))) {
+                remove(id);
+            } else {
+                refresh(id);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ignoring malformed " + CHANNEL + " payload: " + payload);
+            reload();
+        }
+    }
+
+    /*
+     * The map has already changed, so the version is bumped right away for
+     * readers of the map and the database; it is bumped again once the new
+     * page is published, so a tag taken in between never outlives the old page.
+     */
+    private void changed() {
+        versions.bump(EntityVersions.PRODUCTS);
+        if (rebuildQueued.compareAndSet(false, true)) {
+            vertx.executeBlocking(() -> {
+                rebuildQueued.set(false);
+                rebuild();
+                return null;
+            }, false).onFailure(err -> System.err.println("Failed to rebuild product catalog page: " + err.getMessage()));
+        }
+    }
+
+    // Runs on a worker; serialized so the last rebuild always reflects the latest map state
+    private synchronized void rebuild() {
+        JsonArray array = new JsonArray();
+        String nextCursor = null;
+        for (JsonObject product : products.values()) {
+            if (array.size() == ProductFilter.DEFAULT_LIMIT) {
+                nextCursor = ProductFilter.encodeCursor(array.getJsonObject(array.size() - 1).getInteger("id"));
+                break;
+            }
+            array.add(product);
+        }
+        firstPage = new FirstPage(PrecompressedBody.compress(array.toBuffer()), nextCursor);
+        versions.bump(EntityVersions.PRODUCTS);
+    }
+}
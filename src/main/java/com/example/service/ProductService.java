@@ -1,30 +1,105 @@
 package com.example.service;
 
+import java.util.List;
+
+import com.example.model.ProductFilter;
+import com.example.util.EntityVersions;
+import com.example.util.RowJsonWriter;
+import com.example.util.RowStreamExporter;
+
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
-import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 
 public class ProductService {
+
+    // Columns returned by listings and kept in the catalog cache
+    static final String PRODUCT_COLUMNS = "id, name, description, price, stock, image_url, salesperson_id";
+    static final RowJsonWriter PRODUCT_JSON = RowJsonWriter.of(PRODUCT_COLUMNS.split(", "));
+
+    // Keyset predicate shared by the paged listings: $1 cursor id, $2..$4 filters, $5 page size + 1
+    private static final String PAGE_FILTER =
+        "id > $1 AND ($2::numeric IS NULL OR price >= $2) AND ($3::numeric IS NULL OR price <= $3) " +
+        "AND (NOT $4::boolean OR stock > 0)";
+    // Only added with ?q=, so the name index stays usable (see ProductFilter.getNameUntil)
+    private static final String NAME_FILTER = " AND lower(name) ~>=~ $%d AND lower(name) ~<~ $%d";
+    private static final String PUBLIC_PAGE_QUERY =
+        "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE " + PAGE_FILTER + " ORDER BY id LIMIT $5";
+    private static final String PUBLIC_NAMED_PAGE_QUERY =
+        "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE " + PAGE_FILTER + String.format(NAME_FILTER, 6, 7) +
+        " ORDER BY id LIMIT $5";
+    private static final String OWNED_PAGE_QUERY =
+        "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE salesperson_id = $6 AND " + PAGE_FILTER + " ORDER BY id LIMIT $5";
+    private static final String OWNED_NAMED_PAGE_QUERY =
+        "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE salesperson_id = $6 AND " + PAGE_FILTER +
+        String.format(NAME_FILTER, 7, 8) + " ORDER BY id LIMIT $5";
+
+    // Matches the txid in products_changed payloads, so the catalog cache skips its own writes
+    private static final String WRITE_TXID = "txid_current() AS txid";
+
+    private static final List<String> PATCHABLE_COLUMNS = List.of("name", "description", "price", "stock", "image_url");
+
+    /*
+     * Ownership is checked by the mutation itself. The outer SELECT always
+     * yields one row: the changed product, or nulls plus "found", which is read
+     * from the statement snapshot and so still sees the row before the change.
+     * found = false means 404, found = true with no product means 403.
+     */
+    private static final String OWNERSHIP_RESULT =
+        "SELECT updated.*, EXISTS (SELECT 1 FROM products WHERE id = $1) AS found " +
+        "FROM (SELECT 1) AS one LEFT JOIN updated ON true";
+    private static final String DELETE_OWNED_QUERY =
+        "WITH deleted AS (DELETE FROM products WHERE id = $1 AND salesperson_id = $2 RETURNING id, txid_current() AS txid) " +
+        "SELECT deleted.id AS deleted_id, deleted.txid, EXISTS (SELECT 1 FROM products WHERE id = $1) AS found " +
+        "FROM (SELECT 1) AS one LEFT JOIN deleted ON true";
+
     private final PgPool client;
+    private final ProductCatalogCache catalogCache;
+    private final EntityVersions versions;
+    private final RowStreamExporter exporter;
 
-    public ProductService(PgPool client) {
+    public ProductService(PgPool client, ProductCatalogCache catalogCache, EntityVersions versions) {
         this.client = client;
+        this.catalogCache = catalogCache;
+        this.versions = versions;
+        this.exporter = new RowStreamExporter(client);
     }
 
+    // Always paged; the first unfiltered page is served pre-encoded from the catalog cache
     public void getAllPublic(RoutingContext ctx) {
-        String query = "SELECT * FROM products";
-        client.preparedQuery(query)
-            .execute()
-            .onSuccess(rows -> {
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(jsonArrayFromRows(rows).encode());
-            })
-            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+        ProductFilter filter = parseFilter(ctx);
+        if (filter == null) return;
+
+        if (!catalogCache.isLoaded()) {
+            String query = filter.getNameFrom() != null ? PUBLIC_NAMED_PAGE_QUERY : PUBLIC_PAGE_QUERY;
+            queryPage(ctx, query, withName(pageParams(filter), filter), filter);
+            return;
+        }
+
+        // The cache's version only moves when the cache does
+        String etag = versions.etag(EntityVersions.PRODUCTS);
+        if (EntityVersions.notModified(ctx, etag)) return;
+        ctx.response().putHeader("ETag", etag);
+
+        if (filter.isFirstPage()) {
+            ProductCatalogCache.FirstPage page = catalogCache.getFirstPage();
+            if (page.getNextCursor() != null) {
+                ctx.response().putHeader("X-Next-Cursor", page.getNextCursor());
+            }
+            ctx.response().putHeader("Content-Type", "application/json");
+            page.getBody().send(ctx);
+            return;
+        }
+        writePage(ctx, catalogCache.page(filter), filter);
+    }
+
+    // Full catalog export streamed from a cursor, for admin tooling
+    public void exportPublic(RoutingContext ctx) {
+        String query = "SELECT " + PRODUCT_COLUMNS + " FROM products ORDER BY id";
+        exporter.export(ctx, "products", query, Tuple.tuple());
     }
 
     public void getAll(RoutingContext ctx) {
@@ -33,15 +108,12 @@ public class ProductService {
             ctx.response().setStatusCode(401).end("Unauthorized");
             return;
         }
-        String query = "SELECT * FROM products WHERE salesperson_id = $1";
-        client.preparedQuery(query)
-            .execute(Tuple.of(salespersonId))
-            .onSuccess(rows -> {
-                ctx.response()
-                    .putHeader("Content-Type", "application/json")
-                    .end(jsonArrayFromRows(rows).encode());
-            })
-            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+
+        ProductFilter filter = parseFilter(ctx);
+        if (filter == null) return;
+
+        String query = filter.getNameFrom() != null ? OWNED_NAMED_PAGE_QUERY : OWNED_PAGE_QUERY;
+        queryPage(ctx, query, withName(pageParams(filter).addInteger(salespersonId), filter), filter);
     }
 
     public void create(RoutingContext ctx) {
@@ -58,11 +130,16 @@ public class ProductService {
             return;
         }
 
-        String query = "INSERT INTO products (name, description, price, stock, image_url, salesperson_id) VALUES ($1, $2, $3, $4, $5, $6) RETURNING id";
+        String query = "INSERT INTO products (name, description, price, stock, image_url, salesperson_id) VALUES ($1, $2, $3, $4, $5, $6) RETURNING " + PRODUCT_COLUMNS + ", " + WRITE_TXID;
         client.preparedQuery(query)
             .execute(Tuple.of(name, description, price, stock, image_url, salespersonId))
             .onSuccess(rows -> {
-                int id = rows.iterator().next().getInteger("id");
+                Row row = rows.iterator().next();
+                JsonObject product = row.toJson();
+                product.remove("txid");
+                catalogCache.put(product, row.getLong("txid"));
+
+                int id = row.getInteger("id");
                 body.put("id", id);
                 body.put("salesperson_id", salespersonId);
 
@@ -81,7 +158,12 @@ public class ProductService {
             ctx.response().setStatusCode(401).end("Unauthorized");
             return;
         }
-        String query = "SELECT * FROM products WHERE id = $1 AND salesperson_id = $2";
+
+        // Product writes from anywhere reach the catalog cache, so its version covers this row too
+        String etag = catalogCache.isLoaded() ? versions.scopedEtag(EntityVersions.PRODUCTS, salespersonId) : null;
+        if (etag != null && EntityVersions.notModified(ctx, etag)) return;
+
+        String query = "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE id = $1 AND salesperson_id = $2";
         client.preparedQuery(query)
             .execute(Tuple.of(id, salespersonId))
             .onSuccess(rows -> {
@@ -89,9 +171,12 @@ public class ProductService {
                     ctx.response().setStatusCode(404).end("Product not found or not authorized");
                     return;
                 }
+                if (etag != null) {
+                    ctx.response().putHeader("ETag", etag);
+                }
                 ctx.response()
                     .putHeader("Content-Type", "application/json")
-                    .end(rows.iterator().next().toJson().encode());
+                    .end(PRODUCT_JSON.writeObject(rows.iterator().next()));
             })
             .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
     }
@@ -106,32 +191,53 @@ public class ProductService {
             return;
         }
 
-        String checkQuery = "SELECT 1 FROM products WHERE id = $1 AND salesperson_id = $2";
-        client.preparedQuery(checkQuery)
-            .execute(Tuple.of(id, salespersonId))
-            .onSuccess(checkRows -> {
-                if (!checkRows.iterator().hasNext()) {
-                    ctx.response().setStatusCode(403).end("Forbidden: You do not own this product");
-                    return;
+        Tuple params = Tuple.of(id, salespersonId)
+            .addString(body.getString("name"))
+            .addString(body.getString("description"))
+            .addDouble(body.getDouble("price"))
+            .addInteger(body.getInteger("stock"))
+            .addString(body.getString("image_url"));
+        updateOwned(ctx, "name = $3, description = $4, price = $5, stock = $6, image_url = $7", params);
+    }
+
+    // Partial update: only the columns present in the body are written
+    public void patch(RoutingContext ctx) {
+        int id = Integer.parseInt(ctx.pathParam("id"));
+        JsonObject body = ctx.body().asJsonObject();
+
+        Integer salespersonId = ctx.get("userId");
+        if (salespersonId == null) {
+            ctx.response().setStatusCode(401).end("Unauthorized");
+            return;
+        }
+
+        StringBuilder set = new StringBuilder();
+        Tuple params = Tuple.of(id, salespersonId);
+        try {
+            for (String column : PATCHABLE_COLUMNS) {
+                if (body == null || !body.containsKey(column)) {
+                    continue;
                 }
-                String query = "UPDATE products SET name=$1, description=$2, price=$3, stock=$4, image_url=$5 WHERE id=$6";
-                client.preparedQuery(query)
-                    .execute(Tuple.of(
-                        body.getString("name"),
-                        body.getString("description"),
-                        body.getDouble("price"),
-                        body.getInteger("stock"),
-                        body.getString("image_url"),
-                        id
-                    ))
-                    .onSuccess(rows -> {
-                        ctx.response()
-                            .putHeader("Content-Type", "application/json")
-                            .end(body.put("id", id).encode());
-                    })
-                    .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
-            })
-            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+                if (set.length() > 0) set.append(", ");
+                set.append(column).append(" = $").append(params.size() + 1);
+                if (column.equals("price")) {
+                    params.addDouble(body.getDouble(column));
+                } else if (column.equals("stock")) {
+                    params.addInteger(body.getInteger(column));
+                } else {
+                    params.addString(body.getString(column));
+                }
+            }
+        } catch (ClassCastException e) {
+            ctx.response().setStatusCode(400).end("Invalid field type");
+            return;
+        }
+
+        if (set.length() == 0) {
+            ctx.response().setStatusCode(400).end("Nothing to update, send at least one of " + String.join(", ", PATCHABLE_COLUMNS));
+            return;
+        }
+        updateOwned(ctx, set.toString(), params);
     }
 
     public void delete(RoutingContext ctx) {
@@ -143,28 +249,107 @@ public class ProductService {
             return;
         }
 
-        String checkQuery = "SELECT 1 FROM products WHERE id = $1 AND salesperson_id = $2";
-        client.preparedQuery(checkQuery)
+        client.preparedQuery(DELETE_OWNED_QUERY)
             .execute(Tuple.of(id, salespersonId))
-            .onSuccess(checkRows -> {
-                if (!checkRows.iterator().hasNext()) {
-                    ctx.response().setStatusCode(403).end("Forbidden: You do not own this product");
+            .onSuccess(rows -> {
+                Row row = rows.iterator().next();
+                if (row.getInteger("deleted_id") == null) {
+                    rejectNotOwned(ctx, row);
                     return;
                 }
-                String query = "DELETE FROM products WHERE id = $1";
-                client.preparedQuery(query)
-                    .execute(Tuple.of(id))
-                    .onSuccess(rows -> ctx.response().setStatusCode(204).end())
-                    .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+                catalogCache.remove(id, row.getLong("txid"));
+                ctx.response().setStatusCode(204).end();
+            })
+            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+    }
+
+    // $1 id, $2 owner, $3.. the values referenced by setClause
+    private void updateOwned(RoutingContext ctx, String setClause, Tuple params) {
+        String query = "WITH updated AS (UPDATE products SET " + setClause +
+            " WHERE id = $1 AND salesperson_id = $2 RETURNING " + PRODUCT_COLUMNS + ", " + WRITE_TXID + ") " + OWNERSHIP_RESULT;
+        client.preparedQuery(query)
+            .execute(params)
+            .onSuccess(rows -> {
+                Row row = rows.iterator().next();
+                if (row.getInteger("id") == null) {
+                    rejectNotOwned(ctx, row);
+                    return;
+                }
+                JsonObject product = row.toJson();
+                product.remove("found");
+                product.remove("txid");
+                catalogCache.put(product, row.getLong("txid"));
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(product.encode());
+            })
+            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+    }
+
+    private void rejectNotOwned(RoutingContext ctx, Row row) {
+        if (row.getBoolean("found")) {
+            ctx.response().setStatusCode(403).end("Forbidden: You do not own this product");
+        } else {
+            ctx.response().setStatusCode(404).end("Product not found");
+        }
+    }
+
+    private ProductFilter parseFilter(RoutingContext ctx) {
+        try {
+            return ProductFilter.fromParams(ctx.queryParams());
+        } catch (IllegalArgumentException e) {
+            ctx.response().setStatusCode(400).end(e.getMessage());
+            return null;
+        }
+    }
+
+    private Tuple pageParams(ProductFilter filter) {
+        return Tuple.tuple()
+            .addInteger(filter.getAfterId())
+            .addDouble(filter.getMinPrice())
+            .addDouble(filter.getMaxPrice())
+            .addBoolean(filter.isInStock())
+            .addInteger(filter.getLimit() + 1);
+    }
+
+    // The name range goes last, after the owner id where there is one
+    private Tuple withName(Tuple params, ProductFilter filter) {
+        if (filter.getNameFrom() != null) {
+            params.addString(filter.getNameFrom()).addString(filter.getNameUntil());
+        }
+        return params;
+    }
+
+    private void queryPage(RoutingContext ctx, String query, Tuple params, ProductFilter filter) {
+        client.preparedQuery(query)
+            .execute(params)
+            .onSuccess(rows -> {
+                // Rows are encoded directly; the extra row only sets the cursor
+                if (rows.size() > filter.getLimit()) {
+                    int lastId = 0;
+                    int seen = 0;
+                    for (Row row : rows) {
+                        if (seen++ == filter.getLimit()) break;
+                        lastId = row.getInteger("id");
+                    }
+                    ctx.response().putHeader("X-Next-Cursor", ProductFilter.encodeCursor(lastId));
+                }
+                ctx.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(PRODUCT_JSON.writeArray(rows, rows.size(), filter.getLimit()));
             })
             .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
     }
 
-    private JsonArray jsonArrayFromRows(RowSet<Row> rows) {
-        JsonArray array = new JsonArray();
-        for (Row row : rows) {
-            array.add(row.toJson());
+    // page holds up to limit + 1 items; the extra one only tells us a next page exists
+    private void writePage(RoutingContext ctx, List<JsonObject> page, ProductFilter filter) {
+        if (page.size() > filter.getLimit()) {
+            page = page.subList(0, filter.getLimit());
+            int lastId = page.get(page.size() - 1).getInteger("id");
+            ctx.response().putHeader("X-Next-Cursor", ProductFilter.encodeCursor(lastId));
         }
-        return array;
+        ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonArray(page).encode());
     }
 }
@@ -0,0 +1,158 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.model.Role;
+import com.example.util.EntityVersions;
+import com.example.util.PgNotificationListener;
+import com.example.util.PrecompressedBody;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+
+/**
+ * The roles table, loaded once per process and reloaded whenever it changes
+ * (roles_changed NOTIFY channel, see db/migrations/005_roles_notify.sql).
+ *
+ * Role ids are small serials, so lookups index straight into an array; the
+ * rare id beyond MAX_DENSE_ID goes to a map instead. User listings carry
+ * role names, so every load also bumps the users version.
+ */
+public class RoleRegistry implements Shareable {
+
+    public static final String CHANNEL = "roles_changed";
+
+    private static final String SELECT_ALL = "SELECT id, name FROM roles ORDER BY id";
+    private static final int MAX_DENSE_ID = 1024;
+    private static final long RELOAD_DELAY_MS = 5000;
+
+    // Immutable view swapped in as a whole on every load
+    private static final class Snapshot {
+        final Role[] byId;
+        final Map<Integer, Role> sparse;
+        final List<Role> all;
+        final PrecompressedBody json;
+
+        Snapshot(Role[] byId, Map<Integer, Role> sparse, List<Role> all) {
+            this.byId = byId;
+            this.sparse = sparse;
+            this.all = all;
+            this.json = PrecompressedBody.compress(encode(all));
+        }
+
+        private static Buffer encode(List<Role> all) {
+            JsonArray array = new JsonArray();
+            for (Role role : all) {
+                array.add(new JsonObject().put("id", role.getId()).put("name", role.getName()));
+            }
+            return array.toBuffer();
+        }
+    }
+
+    private final Vertx vertx;
+    private final PgPool client;
+    private final EntityVersions versions;
+    private final Promise<Void> ready = Promise.promise();
+
+    private volatile Snapshot snapshot = new Snapshot(new Role[0], Map.of(), List.of());
+
+    public static RoleRegistry shared(Vertx vertx, PgPool client, PgNotificationListener notifications,
+                                      EntityVersions versions) {
+        LocalMap<String, RoleRegistry> registries = vertx.sharedData().getLocalMap(RoleRegistry.class.getName());
+        return registries.computeIfAbsent("roles", name -> {
+            RoleRegistry registry = new RoleRegistry(vertx, client, versions);
+            notifications.listen(CHANNEL, payload -> registry.reload(), registry::reload);
+            registry.load();
+            return registry;
+        });
+    }
+
+    private RoleRegistry(Vertx vertx, PgPool client, EntityVersions versions) {
+        this.vertx = vertx;
+        this.client = client;
+        this.versions = versions;
+    }
+
+    // Completes once the first load succeeded
+    public Future<RoleRegistry> ready() {
+        return ready.future().map(this);
+    }
+
+    public Role get(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        Snapshot current = snapshot;
+        if (id >= 0 && id < current.byId.length) {
+            return current.byId[id];
+        }
+        return current.sparse.get(id);
+    }
+
+    public String name(Integer id) {
+        Role role = get(id);
+        return role != null ? role.getName() : null;
+    }
+
+    // All roles ordered by id
+    public List<Role> all() {
+        return snapshot.all;
+    }
+
+    // The same list as a JSON array of {id, name}, encoded once per load
+    public PrecompressedBody json() {
+        return snapshot.json;
+    }
+
+    // Retries until the first load succeeds, so requests waiting on ready() are served eventually
+    private void load() {
+        reload().onFailure(err -> vertx.setTimer(RELOAD_DELAY_MS, id -> load()));
+    }
+
+    public Future<Void> reload() {
+        return client.query(SELECT_ALL)
+            .execute()
+            .compose(rows -> {
+                List<Role> all = new ArrayList<>(rows.size());
+                int maxDenseId = -1;
+                for (Row row : rows) {
+                    Role role = new Role(row.getInteger("id"), row.getString("name"));
+                    all.add(role);
+                    if (role.getId() >= 0 && role.getId() < MAX_DENSE_ID) {
+                        maxDenseId = Math.max(maxDenseId, role.getId());
+                    }
+                }
+
+                Role[] byId = new Role[maxDenseId + 1];
+                Map<Integer, Role> sparse = new HashMap<>();
+                for (Role role : all) {
+                    if (role.getId() >= 0 && role.getId() < byId.length) {
+                        byId[role.getId()] = role;
+                    } else {
+                        sparse.put(role.getId(), role);
+                    }
+                }
+                // The role list is compressed off the event loop; readers keep the old snapshot until then
+                return vertx.executeBlocking(() -> new Snapshot(byId, sparse, Collections.unmodifiableList(all)));
+            })
+            .onSuccess(fresh -> {
+                snapshot = fresh;
+                versions.bump(EntityVersions.USERS);
+                ready.tryComplete();
+            })
+            .onFailure(err -> System.err.println("Failed to load roles: " + err.getMessage()))
+            .mapEmpty();
+    }
+}
@@ -1,25 +1,19 @@
 package com.example.service;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.example.util.PrecompressedBody;
 
 import io.vertx.core.Future;
-import io.vertx.core.Promise;
-import io.vertx.core.json.JsonObject;
 
 public class RoleService {
 
-    public Future<List<JsonObject>> getRoles() {
-        Promise<List<JsonObject>> promise = Promise.promise();
+    private final RoleRegistry roleRegistry;
 
-        // Create role list
-        List<JsonObject> roles = new ArrayList<>();
-        roles.add(new JsonObject().put("id", 1).put("name", "SALESPERSON"));
-        roles.add(new JsonObject().put("id", 2).put("name", "ACCOUNTANT"));
-
-        // Return roles asynchronously (simulate DB fetch)
-        promise.complete(roles);
+    public RoleService(RoleRegistry roleRegistry) {
+        this.roleRegistry = roleRegistry;
+    }
 
-        return promise.future();
+    // Roles as stored in the roles table, served pre-encoded from the registry
+    public Future<PrecompressedBody> getRoles() {
+        return roleRegistry.ready().map(RoleRegistry::json);
     }
 }
@@ -0,0 +1,224 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import com.example.util.PgNotificationListener;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Optional in-memory prefix index over usernames and emails (users.prefixIndex).
+ *
+ * Answers the prefix tiers of the user search ranking (exact match, username
+ * prefix, email prefix) from two sorted sets, in the same order as
+ * UserService.SEARCH_QUERY. When the prefix matches do not fill the requested
+ * page, search() returns null and the caller falls back to the trigram query.
+ *
+ * Kept current by UserService after its own writes and by the users_changed
+ * NOTIFY channel (db/migrations/004_users_search.sql) for everything else.
+ */
+public class UserSearchIndex implements Shareable {
+
+    public static final String CHANNEL = "users_changed";
+
+    private static final String SELECT_ALL = "SELECT id, username, email FROM users";
+    private static final String SELECT_ONE = "SELECT id, username, email FROM users WHERE id = $1";
+
+    // Lower-cased value plus id, ordered like ORDER BY value COLLATE "C", id
+    private static final class Key implements Comparable<Key> {
+        final String value;
+        final int id;
+
+        Key(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byValue = value.compareTo(other.value);
+            return byValue != 0 ? byValue : Integer.compare(id, other.id);
+        }
+    }
+
+    private static final class Entry {
+        final String username;
+        final String email;
+
+        Entry(String username, String email) {
+            this.username = username;
+            this.email = email;
+        }
+    }
+
+    private final PgPool client;
+    private final Map<Integer, Entry> users = new ConcurrentHashMap<>();
+    private final NavigableSet<Key> usernames = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key> emails = new ConcurrentSkipListSet<>();
+
+    private volatile boolean loaded;
+
+    public static UserSearchIndex shared(Vertx vertx, PgPool client, PgNotificationListener notifications) {
+        LocalMap<String, UserSearchIndex> indexes = vertx.sharedData().getLocalMap(UserSearchIndex.class.getName());
+        return indexes.computeIfAbsent("users", name -> {
+            UserSearchIndex index = new UserSearchIndex(client);
+            notifications.listen(CHANNEL, index::onNotification, index::reload);
+            index.reload();
+            return index;
+        });
+    }
+
+    private UserSearchIndex(PgPool client) {
+        this.client = client;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Ids ranked offset..offset+limit-1, or null when prefix matches alone cannot fill that page
+    public List<Integer> search(String term, int limit, int offset) {
+        String prefix = term.toLowerCase(Locale.ROOT);
+        int wanted = offset + limit;
+        Set<Integer> ranked = new LinkedHashSet<>();
+
+        // Tier 0: exact username or email, ordered by username
+        List<Key> exact = new ArrayList<>();
+        for (Key key : range(usernames, prefix)) {
+            if (!key.value.equals(prefix)) break;
+            exact.add(key);
+        }
+        for (Key key : range(emails, prefix)) {
+            if (!key.value.equals(prefix)) break;
+            Entry entry = users.get(key.id);
+            if (entry != null && !entry.username.equals(prefix)) {
+                exact.add(new Key(entry.username, key.id));
+            }
+        }
+        exact.sort(Comparator.naturalOrder());
+        for (Key key : exact) {
+            ranked.add(key.id);
+        }
+
+        // Tier 1: username prefix
+        for (Key key : range(usernames, prefix)) {
+            if (ranked.size() >= wanted || !key.value.startsWith(prefix)) break;
+            ranked.add(key.id);
+        }
+
+        // Tier 2: email prefix, for users not already matched by username
+        for (Key key : range(emails, prefix)) {
+            if (ranked.size() >= wanted || !key.value.startsWith(prefix)) break;
+            Entry entry = users.get(key.id);
+            if (entry != null && !entry.username.startsWith(prefix)) {
+                ranked.add(key.id);
+            }
+        }
+
+        if (ranked.size() < wanted) {
+            return null;
+        }
+        return new ArrayList<>(ranked).subList(offset, wanted);
+    }
+
+    private static NavigableSet<Key> range(NavigableSet<Key> keys, String prefix) {
+        return keys.tailSet(new Key(prefix, Integer.MIN_VALUE), true);
+    }
+
+    public Future<Void> reload() {
+        loaded = false;
+        return client.query(SELECT_ALL)
+            .execute()
+            .onSuccess(rows -> {
+                users.clear();
+                usernames.clear();
+                emails.clear();
+                for (Row row : rows) {
+                    put(row.getInteger("id"), row.getString("username"), row.getString("email"));
+                }
+                loaded = true;
+            })
+            .onFailure(err -> System.err.println("Failed to load user search index: " + err.getMessage()))
+            .mapEmpty();
+    }
+
+    // Re-read a single user after a change
+    public Future<Void> refresh(int id) {
+        return client.preparedQuery(SELECT_ONE)
+            .execute(Tuple.of(id))
+            .onSuccess(rows -> {
+                if (rows.iterator().hasNext()) {
+                    Row row = rows.iterator().next();
+                    put(id, row.getString("username"), row.getString("email"));
+                } else {
+                    remove(id);
+                }
+            })
+            .onFailure(err -> System.err.println("Failed to refresh user " + id + " in search index: " + err.getMessage()))
+            .mapEmpty();
+    }
+
+    public void put(int id, String username, String email) {
+        Entry entry = new Entry(lower(username), lower(email));
+        users.compute(id, (key, previous) -> {
+            unlink(id, previous);
+            usernames.add(new Key(entry.username, id));
+            if (entry.email != null) {
+                emails.add(new Key(entry.email, id));
+            }
+            return entry;
+        });
+    }
+
+    public void remove(int id) {
+        users.computeIfPresent(id, (key, previous) -> {
+            unlink(id, previous);
+            return null;
+        });
+    }
+
+    private void unlink(int id, Entry entry) {
+        if (entry != null) {
+            usernames.remove(new Key(entry.username, id));
+            if (entry.email != null) {
+                emails.remove(new Key(entry.email, id));
+            }
+        }
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    // Payload: {"op": "INSERT|UPDATE|DELETE", "id": 42}
+    private void onNotification(String payload) {
+        try {
+            JsonObject event = new JsonObject(payload);
+            int id = event.getInteger("id");
+            if ("DELETE".equals(event.getString("op"))) {
+                remove(id);
+            } else {
+                refresh(id);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ignoring malformed " + CHANNEL + " payload: " + payload);
+            reload();
+        }
+    }
+}
@@ -2,93 +2,120 @@ package com.example.service;
 
 import com.example.model.Role;
 import com.example.model.User;
+import com.example.util.EntityVersions;
+import com.example.util.RowJsonWriter;
+import com.example.util.RowStreamExporter;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgException;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
-import org.mindrot.jbcrypt.BCrypt;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 
 public class UserService {
 
-    private final PgPool client;
+    // SQLSTATE and index names from db/migrations/006_users_unique.sql
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String USERNAME_KEY = "users_username_key";
+    private static final String EMAIL_KEY = "users_email_key";
+
+    // Role names come from the RoleRegistry, so user queries never join roles
+    static final String USER_COLUMNS = "u.id, u.username, u.full_name, u.email, u.role_id";
+
+    /*
+     * Ranking: 0 exact username/email, 1 username prefix, 2 email prefix,
+     * 3 any other substring match by trigram similarity. Ties are ordered by
+     * username (email in tier 2) in byte order, then id, which is the order
+     * UserSearchIndex reproduces for tiers 0-2. The ILIKE filter is served by
+     * the trigram GIN indexes from db/migrations/004_users_search.sql.
+     * $1 '%term%', $2 lower(term), $3 'term%', $4 limit, $5 offset.
+     */
+    static final String SEARCH_QUERY =
+            "SELECT " + USER_COLUMNS + " FROM users u " +
+            "CROSS JOIN LATERAL (SELECT CASE " +
+            "WHEN lower(u.username) = $2 OR lower(u.email) = $2 THEN 0 " +
+            "WHEN lower(u.username) LIKE $3 THEN 1 " +
+            "WHEN lower(u.email) LIKE $3 THEN 2 " +
+            "ELSE 3 END AS tier) t " +
+            "WHERE u.username ILIKE $1 OR u.email ILIKE $1 " +
+            "ORDER BY t.tier, " +
+            "CASE WHEN t.tier = 3 THEN greatest(similarity(u.username, $2), similarity(u.email, $2)) END DESC, " +
+            "CASE WHEN t.tier = 2 THEN lower(u.email) ELSE lower(u.username) END COLLATE \"C\", u.id " +
+            "LIMIT $4 OFFSET $5";
+    private static final String SEARCH_BY_IDS_QUERY =
+            "SELECT " + USER_COLUMNS + " FROM users u WHERE u.id = ANY($1) ORDER BY array_position($1, u.id)";
 
-    public UserService(PgPool client) {
+    private final PgPool client;
+    private final PasswordService passwordService;
+    private final RoleRegistry roles;
+    private final UserSearchIndex searchIndex;
+    private final EntityVersions versions;
+    private final RowStreamExporter exporter;
+    private final RowJsonWriter userJson;
+
+    // searchIndex is optional; without it every search runs SEARCH_QUERY
+    public UserService(PgPool client, PasswordService passwordService, RoleRegistry roles, UserSearchIndex searchIndex,
+                       EntityVersions versions) {
         this.client = client;
+        this.passwordService = passwordService;
+        this.roles = roles;
+        this.searchIndex = searchIndex;
+        this.versions = versions;
+        this.exporter = new RowStreamExporter(client);
+        this.userJson = userJsonWriter(roles::name);
     }
 
-    // Check if username or email exists
-    public Future<String> checkUserExists(String username, String email) {
-        Promise<String> promise = Promise.promise();
-
-        String sqlUsername = "SELECT COUNT(*) AS count FROM users WHERE username = $1";
-        String sqlEmail = "SELECT COUNT(*) AS count FROM users WHERE email = $1";
-
-        client.preparedQuery(sqlUsername).execute(Tuple.of(username), ar1 -> {
-            if (ar1.failed()) {
-                promise.fail(ar1.cause());
-                return;
-            }
-            Row row1 = ar1.result().iterator().next();
-            boolean usernameExists = row1.getInteger("count") > 0;
-
-            client.preparedQuery(sqlEmail).execute(Tuple.of(email), ar2 -> {
-                if (ar2.failed()) {
-                    promise.fail(ar2.cause());
-                    return;
-                }
-                Row row2 = ar2.result().iterator().next();
-                boolean emailExists = row2.getInteger("count") > 0;
-
-                if (usernameExists) promise.complete("Username already exists");
-                else if (emailExists) promise.complete("Email already exists");
-                else promise.complete(null);
-            });
-        });
-
-        return promise.future();
-    }
-
-    // Create user (hash incoming password)
+    // Create user (hash incoming password). Uniqueness is enforced by the
+    // users_username_key / users_email_key indexes, so this is a single INSERT.
     public Future<Void> createUser(User user) {
         Promise<Void> promise = Promise.promise();
 
-        checkUserExists(user.getUsername(), user.getEmail()).onComplete(check -> {
-            if (check.succeeded()) {
-                String message = check.result();
-                if (message != null) {
-                    promise.fail(message);
-                } else {
-                    // 🔹 Hash password from incoming "password" field
-                    String hashedPassword = BCrypt.hashpw(user.getPassword(), BCrypt.gensalt());
-
-                    String sql = "INSERT INTO users (username, password_hash, role_id, full_name, email) VALUES ($1,$2,$3,$4,$5)";
-                    client.preparedQuery(sql).execute(
-                            Tuple.of(
-                                    user.getUsername(),
-                                    hashedPassword,   // ✅ insert hashed password
-                                    user.getRoleId(),
-                                    user.getFullName(),
-                                    user.getEmail()
-                            ),
-                            ar -> {
-                                if (ar.succeeded()) promise.complete();
-                                else promise.fail(ar.cause());
-                            }
-                    );
-                }
-            } else promise.fail(check.cause());
-        });
+        // 🔹 Hash password from incoming "password" field on the worker pool
+        String sql = "INSERT INTO users (username, password_hash, role_id, full_name, email) VALUES ($1,$2,$3,$4,$5) RETURNING id";
+        passwordService.hash(user.getPassword())
+                .compose(hashedPassword -> client.preparedQuery(sql).execute(
+                        Tuple.of(
+                                user.getUsername(),
+                                hashedPassword,   // ✅ insert hashed password
+                                user.getRoleId(),
+                                user.getFullName(),
+                                user.getEmail()
+                        )))
+                .onSuccess(res -> {
+                    versions.bump(EntityVersions.USERS);
+                    if (searchIndex != null) {
+                        searchIndex.put(res.iterator().next().getInteger("id"), user.getUsername(), user.getEmail());
+                    }
+                    promise.complete();
+                })
+                .onFailure(err -> {
+                    String constraint = uniqueViolation(err);
+                    if (USERNAME_KEY.equals(constraint)) promise.fail("Username already exists");
+                    else if (EMAIL_KEY.equals(constraint)) promise.fail("Email already exists");
+                    else promise.fail(err);
+                });
 
         return promise.future();
     }
 
+    // Name of the violated unique index, or null for any other failure
+    private static String uniqueViolation(Throwable err) {
+        if (err instanceof PgException && UNIQUE_VIOLATION.equals(((PgException) err).getSqlState())) {
+            return ((PgException) err).getConstraint();
+        }
+        return null;
+    }
+
     // Find user by username
     public Future<User> findByUsername(String username) {
         Promise<User> promise = Promise.promise();
@@ -118,17 +145,7 @@ public class UserService {
 
     // Get all roles
     public Future<List<Role>> getAllRoles() {
-        Promise<List<Role>> promise = Promise.promise();
-        client.query("SELECT id, name FROM roles ORDER BY id").execute(ar -> {
-            if (ar.succeeded()) {
-                List<Role> roles = new ArrayList<>();
-                for (Row row : ar.result()) {
-                    roles.add(new Role(row.getInteger("id"), row.getString("name")));
-                }
-                promise.complete(roles);
-            } else promise.fail(ar.cause());
-        });
-        return promise.future();
+        return roles.ready().map(RoleRegistry::all);
     }
 
     // Update user role
@@ -136,8 +153,10 @@ public class UserService {
         Promise<Void> promise = Promise.promise();
         String sql = "UPDATE users SET role_id = $1 WHERE id = $2";
         client.preparedQuery(sql).execute(Tuple.of(roleId, userId), ar -> {
-            if (ar.succeeded()) promise.complete();
-            else promise.fail(ar.cause());
+            if (ar.succeeded()) {
+                versions.bump(EntityVersions.USERS);
+                promise.complete();
+            } else promise.fail(ar.cause());
         });
         return promise.future();
     }
@@ -145,35 +164,32 @@ public class UserService {
     // Update user details
     public Future<Void> updateUserDetails(int userId, String username, String email, String password) {
         Promise<Void> promise = Promise.promise();
-        String checkSql = "SELECT id FROM users WHERE (username = $1 OR email = $2) AND id != $3";
 
-        client.preparedQuery(checkSql).execute(Tuple.of(username, email, userId), arCheck -> {
-            if (arCheck.failed()) {
-                promise.fail(arCheck.cause());
-                return;
-            }
-            if (arCheck.result().size() > 0) {
-                promise.fail("Username or email already exists");
-                return;
-            }
-
-            String sql;
-            Tuple params;
-
-            if (password != null && !password.isEmpty()) {
-                sql = "UPDATE users SET username = $1, email = $2, password_hash = $3 WHERE id = $4";
-                String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-                params = Tuple.of(username, email, hashedPassword, userId);
-            } else {
-                sql = "UPDATE users SET username = $1, email = $2 WHERE id = $3";
-                params = Tuple.of(username, email, userId);
-            }
-
-            client.preparedQuery(sql).execute(params, arUpdate -> {
-                if (arUpdate.succeeded()) promise.complete();
-                else promise.fail(arUpdate.cause());
-            });
-        });
+        Future<Tuple> params;
+        String sql;
+
+        if (password != null && !password.isEmpty()) {
+            sql = "UPDATE users SET username = $1, email = $2, password_hash = $3 WHERE id = $4";
+            params = passwordService.hash(password)
+                    .map(hashedPassword -> Tuple.of(username, email, hashedPassword, userId));
+        } else {
+            sql = "UPDATE users SET username = $1, email = $2 WHERE id = $3";
+            params = Future.succeededFuture(Tuple.of(username, email, userId));
+        }
+
+        // A clash with another user surfaces as a unique violation
+        params.compose(tuple -> client.preparedQuery(sql).execute(tuple))
+                .onSuccess(res -> {
+                    versions.bump(EntityVersions.USERS);
+                    if (searchIndex != null) {
+                        searchIndex.refresh(userId);
+                    }
+                    promise.complete();
+                })
+                .onFailure(err -> {
+                    if (uniqueViolation(err) != null) promise.fail("Username or email already exists");
+                    else promise.fail(err);
+                });
 
         return promise.future();
     }
@@ -181,93 +197,105 @@ public class UserService {
     // Get user by ID
     public Future<JsonObject> getUserById(int id) {
         Promise<JsonObject> promise = Promise.promise();
-        String sql = "SELECT u.id, u.username, u.full_name, u.email, r.id AS role_id, r.name AS role_name " +
-                     "FROM users u LEFT JOIN roles r ON u.role_id = r.id WHERE u.id = $1";
-        client.preparedQuery(sql).execute(Tuple.of(id), ar -> {
+        String sql = "SELECT " + USER_COLUMNS + " FROM users u WHERE u.id = $1";
+        roles.ready().compose(r -> client.preparedQuery(sql).execute(Tuple.of(id))).onComplete(ar -> {
             if (ar.succeeded()) {
                 RowSet<Row> rows = ar.result();
                 if (!rows.iterator().hasNext()) {
                     promise.complete(null);
                 } else {
                     Row row = rows.iterator().next();
-                    JsonObject userJson = new JsonObject()
-                            .put("id", row.getInteger("id"))
-                            .put("username", row.getString("username"))
-                            .put("fullName", row.getString("full_name"))
-                            .put("email", row.getString("email"))
-                            .put("role", new JsonObject()
-                                    .put("id", row.getInteger("role_id"))
-                                    .put("name", row.getString("role_name")));
-                    promise.complete(userJson);
+                    promise.complete(userJson(row, roles::name));
                 }
             } else promise.fail(ar.cause());
         });
         return promise.future();
     }
 
-    // Get all users
-    public Future<List<JsonObject>> getAllUsers() {
-        Promise<List<JsonObject>> promise = Promise.promise();
-        String sql = "SELECT u.id, u.username, u.full_name, u.email, r.id AS role_id, r.name AS role_name " +
-                     "FROM users u LEFT JOIN roles r ON u.role_id = r.id ORDER BY u.id";
+    // ETag of the full user list; bumped by every write here, by other nodes' writes and by role changes
+    public String usersTag() {
+        return versions.etag(EntityVersions.USERS);
+    }
+
+    // Get all users, as an encoded JSON array
+    public Future<Buffer> getAllUsers() {
+        Promise<Buffer> promise = Promise.promise();
+        String sql = "SELECT " + USER_COLUMNS + " FROM users u ORDER BY u.id";
 
-        client.query(sql).execute(ar -> {
+        roles.ready().compose(r -> client.query(sql).execute()).onComplete(ar -> {
             if (ar.succeeded()) {
-                List<JsonObject> users = new ArrayList<>();
-                for (Row row : ar.result()) {
-                    JsonObject userJson = new JsonObject()
-                            .put("id", row.getInteger("id"))
-                            .put("username", row.getString("username"))
-                            .put("fullName", row.getString("full_name"))
-                            .put("email", row.getString("email"))
-                            .put("role", new JsonObject()
-                                    .put("id", row.getInteger("role_id"))
-                                    .put("name", row.getString("role_name")));
-                    users.add(userJson);
-                }
-                promise.complete(users);
+                promise.complete(userJson.writeArray(ar.result(), ar.result().size()));
             } else promise.fail(ar.cause());
         });
 
         return promise.future();
     }
 
+    // Stream all users with their role, one flat row per user; role names come from the registry
+    public void exportUsers(RoutingContext ctx) {
+        String sql = "SELECT u.id, u.username, u.full_name AS \"fullName\", u.email, u.role_id AS \"roleId\" " +
+                     "FROM users u ORDER BY u.id";
+        Map<String, Function<Row, Object>> roleName = Map.of("roleName", row -> roles.name(row.getInteger("roleId")));
+        roles.ready()
+            .onSuccess(r -> exporter.export(ctx, "users", sql, Tuple.tuple(), roleName))
+            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+    }
+
+    // API shape of a user row with its role; userJsonWriter writes the same shape for lists
+    static JsonObject userJson(Row row, Function<Integer, String> roleName) {
+        return new JsonObject()
+                .put("id", row.getInteger("id"))
+                .put("username", row.getString("username"))
+                .put("fullName", row.getString("full_name"))
+                .put("email", row.getString("email"))
+                .put("role", new JsonObject()
+                        .put("id", row.getInteger("role_id"))
+                        .put("name", roleName.apply(row.getInteger("role_id"))));
+    }
+
+    static RowJsonWriter userJsonWriter(Function<Integer, String> roleName) {
+        return new RowJsonWriter()
+                .field("id", "id")
+                .field("username", "username")
+                .field("fullName", "full_name")
+                .field("email", "email")
+                .object("role", new RowJsonWriter()
+                        .field("id", "role_id")
+                        .field("name", "role_id", id -> roleName.apply((Integer) id)));
+    }
+
     // Delete user
     public Future<Void> deleteUser(int userId) {
         Promise<Void> promise = Promise.promise();
         String sql = "DELETE FROM users WHERE id = $1";
         client.preparedQuery(sql).execute(Tuple.of(userId), ar -> {
-            if (ar.succeeded()) promise.complete();
-            else promise.fail(ar.cause());
-        });
-        return promise.future();
-    }
-
-    // Search users
-    public Future<List<JsonObject>> searchUsers(String term) {
-        Promise<List<JsonObject>> promise = Promise.promise();
-        String sql = "SELECT u.id, u.username, u.full_name, u.email, r.id AS role_id, r.name AS role_name " +
-                     "FROM users u LEFT JOIN roles r ON u.role_id = r.id " +
-                     "WHERE u.username ILIKE $1 OR u.email ILIKE $1 ORDER BY u.id";
-
-        client.preparedQuery(sql).execute(Tuple.of("%" + term + "%"), ar -> {
             if (ar.succeeded()) {
-                List<JsonObject> users = new ArrayList<>();
-                for (Row row : ar.result()) {
-                    JsonObject userJson = new JsonObject()
-                            .put("id", row.getInteger("id"))
-                            .put("username", row.getString("username"))
-                            .put("fullName", row.getString("full_name"))
-                            .put("email", row.getString("email"))
-                            .put("role", new JsonObject()
-                                    .put("id", row.getInteger("role_id"))
-                                    .put("name", row.getString("role_name")));
-                    users.add(userJson);
+                versions.bump(EntityVersions.USERS);
+                if (searchIndex != null) {
+                    searchIndex.remove(userId);
                 }
-                promise.complete(users);
+                promise.complete();
             } else promise.fail(ar.cause());
         });
-
         return promise.future();
     }
+
+    // Search users by username/email substring, best matches first, as an encoded JSON array
+    public Future<Buffer> searchUsers(String term, int limit, int offset) {
+        if (searchIndex != null && searchIndex.isLoaded()) {
+            List<Integer> ids = searchIndex.search(term, limit, offset);
+            if (ids != null) {
+                return roles.ready()
+                        .compose(r -> client.preparedQuery(SEARCH_BY_IDS_QUERY).execute(Tuple.of(ids.toArray(new Integer[0]))))
+                        .map(rows -> userJson.writeArray(rows, rows.size()));
+            }
+        }
+
+        String lower = term.toLowerCase(Locale.ROOT);
+        String escaped = lower.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return roles.ready()
+                .compose(r -> client.preparedQuery(SEARCH_QUERY)
+                        .execute(Tuple.of("%" + escaped + "%", lower, escaped + "%", limit, offset)))
+                .map(rows -> userJson.writeArray(rows, rows.size()));
+    }
 }
@@ -0,0 +1,546 @@
+package com.example.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.metrics.MetricsRegistry;
+import com.example.model.Cart;
+import com.example.util.EntityVersions;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Optional write-behind cart storage, enabled with cart.writeBehind.
+ *
+ * Carts live in memory, striped by customer id, and are read from there.
+ * Changes only mark lines dirty; dirty lines are coalesced and written to the
+ * cart table in one transaction every flushIntervalMs, or as soon as
+ * flushThreshold changes are pending. The whole table is loaded back on
+ * startup, and a clean shutdown flushes first (see Launcher).
+ *
+ * Durability: a change is acknowledged before it reaches PostgreSQL, so a
+ * crash loses whatever had not been flushed yet - at most one interval while
+ * the database is healthy, everything since the last successful flush while it
+ * is not. The memory copy is authoritative, so only one node may run in this
+ * mode against a database, and code reading the cart table directly must
+ * flush() first.
+ *
+ * If PostgreSQL rejects a flush (a constraint or data error rather than a lost
+ * connection), its lines are retried one statement each, so a single bad line
+ * cannot hold back everyone else's. A line rejected maxFlushAttempts times in
+ * a row is dropped from the cart and logged as a dead letter
+ * (cart_flush_dead_letters_total).
+ */
+public class WriteBehindCartStore implements Shareable {
+
+    private static final String SELECT_ALL =
+        "SELECT id, customer_id, product_id, quantity, name, price, image_url FROM cart ORDER BY id";
+    // Line ids come from the table's own sequence, reserved in blocks
+    private static final String NEXT_IDS =
+        "SELECT nextval(pg_get_serial_sequence('cart', 'id'))::int AS id FROM generate_series(1, $1)";
+    private static final String DELETE_LINES = "DELETE FROM cart WHERE id = ANY($1)";
+    private static final String UPSERT_LINE =
+        "INSERT INTO cart (id, customer_id, product_id, quantity, name, price, image_url) " +
+        "VALUES ($1, $2, $3, $4, $5, $6, $7) " +
+        "ON CONFLICT (id) DO UPDATE SET quantity = EXCLUDED.quantity";
+
+    private static final int ID_BLOCK = 100;
+    private static final long RELOAD_DELAY_MS = 5000;
+    // SQLSTATE classes for data exceptions and integrity constraint violations
+    private static final String DATA_EXCEPTION = "22";
+    private static final String CONSTRAINT_VIOLATION = "23";
+
+    private static final class Shard {
+        // customer id -> product id -> line
+        final Map<Integer, Map<Integer, Cart>> carts = new HashMap<>();
+        final Map<Integer, Cart> lines = new HashMap<>();
+        final Set<Integer> dirty = new HashSet<>();
+        final Set<Integer> deleted = new HashSet<>();
+    }
+
+    private final Vertx vertx;
+    private final PgPool client;
+    private final ProductCatalogCache catalogCache;
+    private final EntityVersions versions;
+    private final LongAdder deadLetters;
+    private final Shard[] shards;
+    private final Map<Integer, Integer> lineOwners = new ConcurrentHashMap<>();
+    // line id -> consecutive flushes that rejected it
+    private final Map<Integer, Integer> rejections = new ConcurrentHashMap<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final int flushThreshold;
+    private final int maxFlushAttempts;
+    private final Promise<Void> ready = Promise.promise();
+
+    private Future<Void> lastFlush = Future.succeededFuture();
+
+    public static WriteBehindCartStore shared(Vertx vertx, PgPool client, ProductCatalogCache catalogCache,
+                                              EntityVersions versions, MetricsRegistry metrics, JsonObject config) {
+        LocalMap<String, WriteBehindCartStore> stores = vertx.sharedData().getLocalMap(WriteBehindCartStore.class.getName());
+        return stores.computeIfAbsent("carts", name -> {
+            WriteBehindCartStore store = new WriteBehindCartStore(vertx, client, catalogCache, versions, metrics, config);
+            store.load();
+            vertx.setPeriodic(config.getLong("flushIntervalMs", 1000L), id -> store.flushIfIdle());
+            return store;
+        });
+    }
+
+    // Flush the store if this process runs one; used on shutdown
+    public static Future<Void> flushShared(Vertx vertx) {
+        LocalMap<String, WriteBehindCartStore> stores = vertx.sharedData().getLocalMap(WriteBehindCartStore.class.getName());
+        WriteBehindCartStore store = stores.get("carts");
+        return store != null ? store.flush() : Future.succeededFuture();
+    }
+
+    private WriteBehindCartStore(Vertx vertx, PgPool client, ProductCatalogCache catalogCache,
+                                 EntityVersions versions, MetricsRegistry metrics, JsonObject config) {
+        this.vertx = vertx;
+        this.client = client;
+        this.catalogCache = catalogCache;
+        this.versions = versions;
+        this.deadLetters = metrics.counter("cart_flush_dead_letters_total",
+            "Cart lines dropped after the database rejected them on every flush attempt");
+        this.flushThreshold = config.getInteger("flushThreshold", 500);
+        this.maxFlushAttempts = Math.max(1, config.getInteger("maxFlushAttempts", 5));
+        this.shards = new Shard[config.getInteger("shards", 16)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    public Future<List<Cart>> getCart(int customerId) {
+        return ready.future().map(v -> {
+            Shard shard = shard(customerId);
+            List<Cart> list = new ArrayList<>();
+            synchronized (shard) {
+                for (Cart line : shard.carts.getOrDefault(customerId, Map.of()).values()) {
+                    list.add(copy(line));
+                }
+            }
+            list.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+            list.forEach(this::applyProductDetails);
+            return list;
+        });
+    }
+
+    // Same semantics as the SQL upsert: adds to the quantity of an existing line
+    public Future<Cart> add(Cart item) {
+        int quantity = item.getQuantity() != null ? item.getQuantity() : 1;
+        return ready.future().compose(v -> {
+            Cart line = addToExisting(item, quantity);
+            if (line != null) {
+                changed();
+                return Future.succeededFuture(line);
+            }
+            return nextId().map(id -> {
+                Cart added = addLine(item, quantity, id);
+                changed();
+                return added;
+            });
+        });
+    }
+
+    public Future<List<Cart>> addAll(List<Cart> items) {
+        List<Cart> added = new ArrayList<>(items.size());
+        Future<Void> chain = Future.succeededFuture();
+        for (Cart item : items) {
+            chain = chain.compose(v -> add(item).map(line -> {
+                added.add(line);
+                return null;
+            }));
+        }
+        return chain.map(v -> added);
+    }
+
+    // Both return the id of the customer owning the line, or null if there is no such line
+    public Future<Integer> update(int id, int quantity) {
+        if (quantity <= 0) {
+            return delete(id);
+        }
+        return ready.future().map(v -> {
+            Integer customerId = lineOwners.get(id);
+            if (customerId == null) {
+                return null;
+            }
+            Shard shard = shard(customerId);
+            synchronized (shard) {
+                // Deleted, checked out or dead-lettered since the owner lookup
+                Cart line = shard.lines.get(id);
+                if (line == null) {
+                    return null;
+                }
+                line.setQuantity(quantity);
+                shard.dirty.add(id);
+            }
+            changed();
+            return customerId;
+        });
+    }
+
+    public Future<Integer> delete(int id) {
+        return ready.future().map(v -> {
+            Integer customerId = lineOwners.remove(id);
+            if (customerId == null) {
+                return null;
+            }
+            rejections.remove(id);
+            Shard shard = shard(customerId);
+            synchronized (shard) {
+                Cart line = shard.lines.remove(id);
+                if (line == null) {
+                    return null;
+                }
+                Map<Integer, Cart> cart = shard.carts.get(customerId);
+                cart.remove(line.getProductId());
+                if (cart.isEmpty()) {
+                    shard.carts.remove(customerId);
+                }
+                shard.dirty.remove(id);
+                shard.deleted.add(id);
+            }
+            changed();
+            return customerId;
+        });
+    }
+
+    /**
+     * Checkout has flushed, ordered and deleted these lines in the database;
+     * drop them from memory too. A line the customer added to in the meantime
+     * keeps the difference and is written back by the next flush.
+     */
+    public void checkedOut(int customerId, Integer[] lineIds, Integer[] quantities) {
+        Shard shard = shard(customerId);
+        synchronized (shard) {
+            for (int i = 0; i < lineIds.length; i++) {
+                Cart line = shard.lines.get(lineIds[i]);
+                if (line == null) {
+                    continue;
+                }
+                int left = line.getQuantity() - quantities[i];
+                if (left > 0) {
+                    line.setQuantity(left);
+                    shard.dirty.add(line.getId());
+                    continue;
+                }
+                shard.lines.remove(line.getId());
+                lineOwners.remove(line.getId());
+                rejections.remove(line.getId());
+                Map<Integer, Cart> cart = shard.carts.get(customerId);
+                cart.remove(line.getProductId());
+                if (cart.isEmpty()) {
+                    shard.carts.remove(customerId);
+                }
+                shard.dirty.remove(line.getId());
+                // Already gone from the table; this only undoes a flush that raced the checkout
+                shard.deleted.add(line.getId());
+            }
+        }
+    }
+
+    /**
+     * Write every change made so far. Flushes run one after another, so the
+     * returned future completes only once everything pending at call time is
+     * in the database.
+     */
+    public synchronized Future<Void> flush() {
+        lastFlush = lastFlush.transform(ar -> writeDirty());
+        return lastFlush;
+    }
+
+    private synchronized void flushIfIdle() {
+        if (lastFlush.isComplete()) {
+            flush();
+        }
+    }
+
+    private Future<Void> writeDirty() {
+        List<Integer> upsertIds = new ArrayList<>();
+        List<Tuple> upserts = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+
+        pendingChanges.set(0);
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Integer id : shard.dirty) {
+                    Cart line = shard.lines.get(id);
+                    upsertIds.add(id);
+                    upserts.add(Tuple.of(id, line.getCustomerId(), line.getProductId(), line.getQuantity(),
+                        line.getName(), line.getPrice(), line.getImageUrl()));
+                }
+                deletes.addAll(shard.deleted);
+                shard.dirty.clear();
+                shard.deleted.clear();
+            }
+        }
+
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return Future.succeededFuture();
+        }
+
+        // Deletes go first so a product removed and re-added never trips the (customer, product) key
+        return client.withTransaction(conn -> {
+                Future<?> deleted = deletes.isEmpty()
+                    ? Future.succeededFuture()
+                    : conn.preparedQuery(DELETE_LINES).execute(Tuple.of(deletes.toArray(new Integer[0])));
+                return deleted.compose(v -> upserts.isEmpty()
+                    ? Future.succeededFuture()
+                    : conn.preparedQuery(UPSERT_LINE).executeBatch(upserts));
+            })
+            .<Void>mapEmpty()
+            .onSuccess(v -> upsertIds.forEach(rejections::remove))
+            .recover(err -> {
+                if (rejected(err)) {
+                    System.err.println("Cart flush rejected, retrying line by line: " + err.getMessage());
+                    return writeLineByLine(upsertIds, upserts, deletes);
+                }
+                System.err.println("Cart flush failed, will retry: " + err.getMessage());
+                requeue(upsertIds, deletes);
+                return Future.failedFuture(err);
+            });
+    }
+
+    /*
+     * Each upsert on its own, so only the offending lines fail. Rejected lines
+     * are requeued or dead-lettered and do not fail the flush; anything else
+     * (the database going away) does, like a failed batch.
+     */
+    private Future<Void> writeLineByLine(List<Integer> upsertIds, List<Tuple> upserts, List<Integer> deletes) {
+        Future<?> deleted = deletes.isEmpty()
+            ? Future.succeededFuture()
+            : client.preparedQuery(DELETE_LINES).execute(Tuple.of(deletes.toArray(new Integer[0])));
+        return deleted
+            .recover(err -> {
+                System.err.println("Cart flush failed, will retry: " + err.getMessage());
+                requeue(upsertIds, deletes);
+                return Future.failedFuture(err);
+            })
+            .compose(v -> {
+                List<Future<Void>> writes = new ArrayList<>(upserts.size());
+                for (int i = 0; i < upserts.size(); i++) {
+                    Integer id = upsertIds.get(i);
+                    writes.add(client.preparedQuery(UPSERT_LINE)
+                        .execute(upserts.get(i))
+                        .<Void>mapEmpty()
+                        .onSuccess(written -> rejections.remove(id))
+                        .recover(err -> {
+                            if (!rejected(err)) {
+                                requeue(List.of(id), List.of());
+                                return Future.failedFuture(err);
+                            }
+                            if (rejections.merge(id, 1, Integer::sum) >= maxFlushAttempts) {
+                                rejections.remove(id);
+                                deadLetter(id, err);
+                            } else {
+                                requeue(List.of(id), List.of());
+                            }
+                            return Future.succeededFuture();
+                        }));
+                }
+                return Future.join(writes).mapEmpty();
+            });
+    }
+
+    // The statement reached PostgreSQL and was refused for its data, so retrying it unchanged cannot help
+    private static boolean rejected(Throwable err) {
+        if (!(err instanceof PgException)) {
+            return false;
+        }
+        String state = ((PgException) err).getSqlState();
+        return state != null && (state.startsWith(DATA_EXCEPTION) || state.startsWith(CONSTRAINT_VIOLATION));
+    }
+
+    // Drop a line that keeps failing from the cart, so memory matches what the table can hold
+    private void deadLetter(Integer id, Throwable err) {
+        Integer customerId = lineOwners.remove(id);
+        if (customerId == null) {
+            return;
+        }
+        Shard shard = shard(customerId);
+        Cart line;
+        synchronized (shard) {
+            line = shard.lines.remove(id);
+            if (line == null) {
+                return;
+            }
+            Map<Integer, Cart> cart = shard.carts.get(customerId);
+            cart.remove(line.getProductId());
+            if (cart.isEmpty()) {
+                shard.carts.remove(customerId);
+            }
+            shard.dirty.remove(id);
+            // An older version of the line may already be in the table
+            shard.deleted.add(id);
+        }
+        pendingChanges.incrementAndGet();
+        deadLetters.increment();
+        versions.bump(EntityVersions.cart(customerId));
+        System.err.println("Dropped cart line after " + maxFlushAttempts + " rejected flushes: "
+            + JsonObject.mapFrom(line).encode() + " (" + err.getMessage() + ")");
+    }
+
+    // Put changes from a failed flush back, unless newer changes superseded them
+    private void requeue(List<Integer> upsertIds, List<Integer> deletes) {
+        for (Integer id : upsertIds) {
+            Integer customerId = lineOwners.get(id);
+            if (customerId != null) {
+                Shard shard = shard(customerId);
+                synchronized (shard) {
+                    if (shard.lines.containsKey(id)) {
+                        shard.dirty.add(id);
+                    }
+                }
+            }
+        }
+        for (Integer id : deletes) {
+            // Line ids are never reused, so a deleted id stays deleted
+            Shard shard = shards[0];
+            synchronized (shard) {
+                shard.deleted.add(id);
+            }
+        }
+        pendingChanges.addAndGet(upsertIds.size() + deletes.size());
+    }
+
+    private Cart addToExisting(Cart item, int quantity) {
+        Shard shard = shard(item.getCustomerId());
+        synchronized (shard) {
+            Cart line = shard.carts.getOrDefault(item.getCustomerId(), Map.of()).get(item.getProductId());
+            if (line == null) {
+                return null;
+            }
+            line.setQuantity(line.getQuantity() + quantity);
+            shard.dirty.add(line.getId());
+            return copy(line);
+        }
+    }
+
+    private Cart addLine(Cart item, int quantity, int id) {
+        Shard shard = shard(item.getCustomerId());
+        synchronized (shard) {
+            // Another request may have added the product while the id was being fetched
+            Cart existing = addToExisting(item, quantity);
+            if (existing != null) {
+                return existing;
+            }
+            Cart line = copy(item);
+            line.setId(id);
+            line.setQuantity(quantity);
+            shard.carts.computeIfAbsent(item.getCustomerId(), c -> new LinkedHashMap<>()).put(item.getProductId(), line);
+            shard.lines.put(id, line);
+            shard.dirty.add(id);
+            lineOwners.put(id, item.getCustomerId());
+            return copy(line);
+        }
+    }
+
+    // Called outside shard locks, since a flush takes all of them
+    private void changed() {
+        if (pendingChanges.incrementAndGet() >= flushThreshold) {
+            flushIfIdle();
+        }
+    }
+
+    private Future<Integer> nextId() {
+        synchronized (freeIds) {
+            Integer id = freeIds.poll();
+            if (id != null) {
+                return Future.succeededFuture(id);
+            }
+        }
+        return client.preparedQuery(NEXT_IDS)
+            .execute(Tuple.of(ID_BLOCK))
+            .map(rows -> {
+                synchronized (freeIds) {
+                    for (Row row : rows) {
+                        freeIds.add(row.getInteger("id"));
+                    }
+                    return freeIds.poll();
+                }
+            });
+    }
+
+    // Reads wait for the initial load, which is retried until the database answers
+    private void load() {
+        client.query(SELECT_ALL)
+            .execute()
+            .onSuccess(rows -> {
+                for (Row row : rows) {
+                    Cart line = new Cart();
+                    line.setId(row.getInteger("id"));
+                    line.setCustomerId(row.getInteger("customer_id"));
+                    line.setProductId(row.getInteger("product_id"));
+                    line.setQuantity(row.getInteger("quantity"));
+                    line.setName(row.getString("name"));
+                    line.setPrice(row.getDouble("price"));
+                    line.setImageUrl(row.getString("image_url"));
+
+                    Shard shard = shard(line.getCustomerId());
+                    synchronized (shard) {
+                        shard.carts.computeIfAbsent(line.getCustomerId(), c -> new LinkedHashMap<>()).put(line.getProductId(), line);
+                        shard.lines.put(line.getId(), line);
+                    }
+                    lineOwners.put(line.getId(), line.getCustomerId());
+                }
+                System.out.println("Loaded " + lineOwners.size() + " cart line(s) into the write-behind cart store");
+                ready.complete();
+            })
+            .onFailure(err -> {
+                System.err.println("Failed to load carts, retrying: " + err.getMessage());
+                vertx.setTimer(RELOAD_DELAY_MS, id -> load());
+            });
+    }
+
+    // Latest product name, price and image from the catalog, falling back to what the line stored
+    private void applyProductDetails(Cart line) {
+        JsonObject product = catalogCache.get(line.getProductId());
+        if (product == null) {
+            return;
+        }
+        if (product.getString("name") != null) {
+            line.setName(product.getString("name"));
+        }
+        Number price = product.getNumber("price");
+        if (price != null) {
+            line.setPrice(price.doubleValue());
+        }
+        if (product.getString("image_url") != null) {
+            line.setImageUrl(product.getString("image_url"));
+        }
+    }
+
+    private Shard shard(int customerId) {
+        return shards[Math.floorMod(customerId, shards.length)];
+    }
+
+    private static Cart copy(Cart line) {
+        Cart copy = new Cart();
+        copy.setId(line.getId());
+        copy.setCustomerId(line.getCustomerId());
+        copy.setProductId(line.getProductId());
+        copy.setQuantity(line.getQuantity());
+        copy.setName(line.getName());
+        copy.setPrice(line.getPrice());
+        copy.setImageUrl(line.getImageUrl());
+        return copy;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Version counters behind the ETags of cacheable GETs, so If-None-Match can be
+ * answered with a 304 before any query runs.
+ *
+ * A counter is bumped after every write to its entity set: by the services for
+ * writes made here, and through the entity_changed NOTIFY channel for writes
+ * made by other nodes or straight in SQL (see
+ * db/migrations/010_entity_versions.sql). Keys are hashed onto a fixed number
+ * of slots, so a collision only costs a full response. Tags also carry a
+ * random epoch that changes on restart and whenever notifications may have
+ * been missed, which invalidates every tag handed out before.
+ *
+ * Readers take the tag before reading the data, so a tag is never newer than
+ * the body it is sent with.
+ */
+public class EntityVersions implements Shareable {
+
+    public static final String CHANNEL = "entity_changed";
+
+    public static final String PRODUCTS = "products";
+    public static final String USERS = "users";
+    // Name, price or image of any product, which carts show in place of their own copies
+    public static final String PRODUCT_DETAILS = "products:details";
+    // Payload sent when every cart changed at once (TRUNCATE)
+    private static final String ALL = "*";
+
+    private static final int SLOTS = 4096;
+
+    private final AtomicLongArray versions = new AtomicLongArray(SLOTS);
+
+    private volatile String epoch = newEpoch();
+
+    public static EntityVersions shared(Vertx vertx, PgNotificationListener notifications) {
+        LocalMap<String, EntityVersions> all = vertx.sharedData().getLocalMap(EntityVersions.class.getName());
+        return all.computeIfAbsent("versions", name -> {
+            EntityVersions versions = new EntityVersions();
+            notifications.listen(CHANNEL, versions::onNotification, versions::invalidateAll);
+            return versions;
+        });
+    }
+
+    // Unshared instance, without notifications; the application uses shared()
+    public EntityVersions() {
+    }
+
+    // Key of one customer's cart
+    public static String cart(int customerId) {
+        return "cart:" + customerId;
+    }
+
+    public void bump(String key) {
+        versions.incrementAndGet(slot(key));
+    }
+
+    // Bodies built from several entity sets pass every key, so a write to any of them changes the tag
+    public String etag(String... keys) {
+        StringBuilder tag = new StringBuilder("W/\"").append(epoch).append('-');
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                tag.append('.');
+            }
+            tag.append(Long.toString(versions.get(slot(keys[i])), 36));
+        }
+        return tag.append('"').toString();
+    }
+
+    // For bodies that also depend on who asks, so one caller's tag never validates another's
+    public String scopedEtag(String key, Object scope) {
+        String tag = etag(key);
+        return tag.substring(0, tag.length() - 1) + "-" + scope + "\"";
+    }
+
+    // Answers 304 and returns true if the request's If-None-Match holds etag; callers send the tag with their 200
+    public static boolean notModified(RoutingContext ctx, String etag) {
+        String ifNoneMatch = ctx.request().getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        ctx.response()
+            .setStatusCode(304)
+            .putHeader(HttpHeaders.ETAG, etag)
+            .end();
+        return true;
+    }
+
+    // Weak comparison (RFC 9110 13.1.2): W/ prefixes are ignored
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || opaque(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    // Payload: a key such as "users" or "cart:42", or "*"
+    private void onNotification(String payload) {
+        if (ALL.equals(payload)) {
+            invalidateAll();
+        } else {
+            bump(payload);
+        }
+    }
+
+    private void invalidateAll() {
+        epoch = newEpoch();
+    }
+
+    private static int slot(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (SLOTS - 1);
+    }
+
+    private static String newEpoch() {
+        return Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    }
+}
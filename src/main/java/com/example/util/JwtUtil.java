@@ -1,13 +1,16 @@
 package com.example.util;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
 
 import java.util.Date;
 
 public class JwtUtil {
     private static final String SECRET = "your-very-secret-key";  // Replace with your secret!
     private static final Algorithm algorithm = Algorithm.HMAC256(SECRET);
+    private static final JWTVerifier verifier = JWT.require(algorithm).build(); // thread-safe, built once
     private static final long EXPIRATION_MS = 24 * 60 * 60 * 1000; // 1 day expiry
 
     public static String generateToken(int userId, String username, String role) {
@@ -18,4 +21,9 @@ public class JwtUtil {
                 .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_MS))
                 .sign(algorithm);
     }
+
+    // Throws JWTVerificationException if the signature or expiry check fails
+    public static DecodedJWT verifyToken(String token) {
+        return verifier.verify(token);
+    }
 }
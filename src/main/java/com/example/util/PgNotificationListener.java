@@ -0,0 +1,92 @@
+package com.example.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.config.DatabaseConfig;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.pgclient.pubsub.PgSubscriber;
+
+/**
+ * One dedicated LISTEN connection per process, fanned out to in-memory caches.
+ *
+ * Notifications sent while the connection is down are lost, so every channel
+ * also gets a "resync" callback that fires each time it is (re)subscribed.
+ *
+ * Every shared() caller must release() once, typically from its verticle's
+ * stop(); the last release closes the connection and stops reconnecting, so
+ * shutdown does not schedule timers on a closing Vert.x.
+ */
+public class PgNotificationListener implements Shareable {
+
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final Vertx vertx;
+    private final PgSubscriber subscriber;
+    private final Map<String, List<Handler<String>>> payloadHandlers = new ConcurrentHashMap<>();
+    private final Map<String, List<Runnable>> resyncHandlers = new ConcurrentHashMap<>();
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile boolean closing;
+
+    public static PgNotificationListener shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, PgNotificationListener> listeners = vertx.sharedData().getLocalMap(PgNotificationListener.class.getName());
+        PgNotificationListener shared = listeners.computeIfAbsent("default", name -> {
+            PgNotificationListener listener = new PgNotificationListener(vertx, config);
+            listener.connect();
+            return listener;
+        });
+        shared.users.incrementAndGet();
+        return shared;
+    }
+
+    public Future<Void> release() {
+        if (users.decrementAndGet() > 0) {
+            return Future.succeededFuture();
+        }
+        closing = true;
+        vertx.sharedData().getLocalMap(PgNotificationListener.class.getName()).remove("default", this);
+        return subscriber.close();
+    }
+
+    private PgNotificationListener(Vertx vertx, JsonObject config) {
+        this.vertx = vertx;
+        this.subscriber = PgSubscriber.subscriber(vertx, DatabaseConfig.getConnectOptions(config));
+        // -1 stops reconnecting
+        this.subscriber.reconnectPolicy(retries -> closing ? -1L : RECONNECT_DELAY_MS);
+    }
+
+    // Register a handler for NOTIFY payloads and a callback for when events may have been missed
+    public void listen(String channel, Handler<String> onPayload, Runnable onResync) {
+        payloadHandlers.computeIfAbsent(channel, name -> {
+            subscriber.channel(name)
+                .handler(payload -> payloadHandlers.get(name).forEach(handler -> handler.handle(payload)))
+                .subscribeHandler(v -> resyncHandlers.getOrDefault(name, List.of()).forEach(Runnable::run));
+            return new CopyOnWriteArrayList<>();
+        }).add(onPayload);
+        resyncHandlers.computeIfAbsent(channel, name -> new CopyOnWriteArrayList<>()).add(onResync);
+    }
+
+    private void connect() {
+        if (closing) {
+            return;
+        }
+        subscriber.connect()
+            .onSuccess(v -> System.out.println("Listening for database notifications"))
+            .onFailure(err -> {
+                if (closing) {
+                    return;
+                }
+                System.err.println("Database notification listener failed to connect: " + err.getMessage());
+                vertx.setTimer(RECONNECT_DELAY_MS, id -> connect());
+            });
+    }
+}
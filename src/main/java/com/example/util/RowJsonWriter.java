@@ -0,0 +1,231 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.data.Numeric;
+
+/**
+ * Encodes rows straight to JSON bytes with a Jackson generator, skipping the
+ * JsonObject per row and the intermediate String.
+ *
+ * One writer is built per query shape. Field names are pre-escaped once
+ * (SerializedString) and column positions are resolved once per result set,
+ * so the per-row work is reading values and copying bytes:
+ *
+ *   RowJsonWriter.of("id", "name")                          // {"id":..,"name":..}
+ *   new RowJsonWriter().field("fullName", "full_name")      // renamed column
+ *       .object("role", new RowJsonWriter().field("id", "role_id")
+ *           .field("name", "role_id", id -> roleName(id)))   // derived value
+ *
+ * Values are rendered the way row.toJson().encode() renders them.
+ */
+public class RowJsonWriter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final int INITIAL_ROW_ESTIMATE = 128;
+
+    private static final class Field {
+        final SerializedString name;
+        final String column;
+        final Function<Object, Object> mapper;
+        final RowJsonWriter object;
+
+        Field(String name, String column, Function<Object, Object> mapper, RowJsonWriter object) {
+            this.name = new SerializedString(name);
+            this.column = column;
+            this.mapper = mapper;
+            this.object = object;
+        }
+    }
+
+    private final List<Field> fields = new ArrayList<>();
+
+    // Average encoded row size seen so far, used to size the output buffer up front
+    private volatile int bytesPerRow = INITIAL_ROW_ESTIMATE;
+
+    // JSON field names equal to the column names
+    public static RowJsonWriter of(String... columns) {
+        RowJsonWriter writer = new RowJsonWriter();
+        for (String column : columns) {
+            writer.field(column, column);
+        }
+        return writer;
+    }
+
+    public RowJsonWriter field(String name, String column) {
+        fields.add(new Field(name, column, null, null));
+        return this;
+    }
+
+    // Value derived from a column, e.g. a name looked up from an id
+    public RowJsonWriter field(String name, String column, Function<Object, Object> mapper) {
+        fields.add(new Field(name, column, mapper, null));
+        return this;
+    }
+
+    // Nested object built from more columns of the same row
+    public RowJsonWriter object(String name, RowJsonWriter object) {
+        fields.add(new Field(name, null, null, object));
+        return this;
+    }
+
+    // JSON array of every row
+    public Buffer writeArray(Iterable<Row> rows, int size) {
+        return writeArray(rows, size, Integer.MAX_VALUE);
+    }
+
+    // JSON array of at most limit rows, e.g. a page fetched with one extra row
+    public Buffer writeArray(Iterable<Row> rows, int size, int limit) {
+        int count = Math.min(size, limit);
+        Buffer out = Buffer.buffer(Math.max(2, count * bytesPerRow + 2));
+        try (JsonGenerator generator = FACTORY.createGenerator(new BufferOutputStream(out))) {
+            generator.writeStartArray();
+            int[][] columns = null;
+            int written = 0;
+            for (Row row : rows) {
+                if (written == limit) {
+                    break;
+                }
+                if (columns == null) {
+                    columns = resolve(row);
+                }
+                writeObject(generator, row, columns, 0);
+                written++;
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (count > 0) {
+            bytesPerRow = out.length() / count + 1;
+        }
+        return out;
+    }
+
+    public Buffer writeObject(Row row) {
+        Buffer out = Buffer.buffer(bytesPerRow);
+        try (JsonGenerator generator = FACTORY.createGenerator(new BufferOutputStream(out))) {
+            writeObject(generator, row, resolve(row), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+
+    // The generator buffers internally, so this only sees a few large writes
+    private static final class BufferOutputStream extends OutputStream {
+        private final Buffer buffer;
+
+        BufferOutputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.appendBytes(bytes, offset, length);
+        }
+    }
+
+    // Column positions for this writer and its nested objects, flattened depth-first
+    private int[][] resolve(Row row) {
+        List<int[]> positions = new ArrayList<>();
+        collect(row, positions);
+        return positions.toArray(new int[0][]);
+    }
+
+    private void collect(Row row, List<int[]> positions) {
+        int[] own = new int[fields.size()];
+        positions.add(own);
+        for (int i = 0; i < own.length; i++) {
+            Field field = fields.get(i);
+            if (field.object != null) {
+                own[i] = positions.size();
+                field.object.collect(row, positions);
+            } else {
+                own[i] = row.getColumnIndex(field.column);
+                if (own[i] < 0) {
+                    throw new IllegalArgumentException("Column " + field.column + " is not in the result set");
+                }
+            }
+        }
+    }
+
+    private void writeObject(JsonGenerator generator, Row row, int[][] columns, int slot) throws IOException {
+        int[] own = columns[slot];
+        generator.writeStartObject();
+        for (int i = 0; i < own.length; i++) {
+            Field field = fields.get(i);
+            generator.writeFieldName(field.name);
+            if (field.object != null) {
+                field.object.writeObject(generator, row, columns, own[i]);
+            } else if (field.mapper != null) {
+                writeValue(generator, field.mapper.apply(row.getValue(own[i])));
+            } else {
+                writeValue(generator, row.getValue(own[i]));
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof Numeric) {
+            writeNumeric(generator, (Numeric) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof OffsetDateTime) {
+            generator.writeString(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format((OffsetDateTime) value));
+        } else if (value instanceof Temporal) {
+            generator.writeString(value.toString());
+        } else {
+            // Rare types (json, arrays, buffers...) go through the regular Vert.x encoding
+            generator.writeRawValue(Json.encode(value));
+        }
+    }
+
+    // NUMERIC keeps its full precision; NaN has no JSON form and is rendered as a string
+    private static void writeNumeric(JsonGenerator generator, Numeric value) throws IOException {
+        if (value.isNaN()) {
+            generator.writeString("NaN");
+        } else {
+            generator.writeNumber(value.bigDecimalValue());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.util;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+/**
+ * Streams a query result straight to the HTTP response through a Postgres
+ * cursor, so exports run in constant memory whatever the table size.
+ *
+ * Format is picked with ?format=json (default), ndjson or csv. The cursor is
+ * paused while the response write queue is full and resumed on drain.
+ * Computed columns, such as names resolved from an in-memory cache instead of
+ * a join, follow the query's own columns in every format.
+ */
+public class RowStreamExporter {
+
+    private static final int FETCH_SIZE = 500;
+
+    private enum Format {
+        JSON("application/json", "json"),
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv; charset=utf-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+    }
+
+    private final PgPool client;
+
+    public RowStreamExporter(PgPool client) {
+        this.client = client;
+    }
+
+    public void export(RoutingContext ctx, String fileName, String query, Tuple params) {
+        export(ctx, fileName, query, params, Map.of());
+    }
+
+    // computed: column name -> value derived from the row, in output order
+    public void export(RoutingContext ctx, String fileName, String query, Tuple params,
+                       Map<String, Function<Row, Object>> computed) {
+        Format format;
+        try {
+            format = Format.valueOf(ctx.request().getParam("format", "json").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            ctx.response().setStatusCode(400).end("Unsupported format, use json, ndjson or csv");
+            return;
+        }
+
+        // Cursors only live inside a transaction, so the export holds one connection throughout
+        client.getConnection()
+            .onSuccess(conn -> conn.begin()
+                .onSuccess(tx -> conn.prepare(query)
+                    .onSuccess(ps -> stream(ctx, format, fileName, computed, conn, tx, ps.createStream(FETCH_SIZE, params)))
+                    .onFailure(err -> fail(ctx, conn, tx, err)))
+                .onFailure(err -> fail(ctx, conn, null, err)))
+            .onFailure(err -> ctx.response().setStatusCode(500).end(err.getMessage()));
+    }
+
+    private void stream(RoutingContext ctx, Format format, String fileName, Map<String, Function<Row, Object>> computed,
+                        SqlConnection conn, Transaction tx, RowStream<Row> rows) {
+        HttpServerResponse response = ctx.response();
+        response.setChunked(true)
+            .putHeader("Content-Type", format.contentType)
+            .putHeader("Content-Disposition", "attachment; filename=\"" + fileName + "." + format.extension + "\"");
+
+        boolean[] first = {true};
+        boolean[] finished = {false};
+
+        rows.handler(row -> {
+            Buffer chunk = Buffer.buffer(256);
+            if (first[0]) {
+                if (format == Format.JSON) chunk.appendString("[");
+                if (format == Format.CSV) appendCsvHeader(chunk, row, computed);
+            } else if (format == Format.JSON) {
+                chunk.appendString(",");
+            }
+            first[0] = false;
+
+            if (format == Format.CSV) {
+                appendCsvRow(chunk, row, computed);
+            } else {
+                JsonObject json = row.toJson();
+                computed.forEach((name, value) -> json.put(name, value.apply(row)));
+                chunk.appendBuffer(json.toBuffer());
+                if (format == Format.NDJSON) chunk.appendString("\n");
+            }
+
+            response.write(chunk);
+            if (response.writeQueueFull()) {
+                rows.pause();
+                response.drainHandler(v -> rows.resume());
+            }
+        });
+
+        rows.endHandler(v -> {
+            finished[0] = true;
+            if (format == Format.JSON) {
+                response.write(first[0] ? "[]" : "]");
+            }
+            response.end();
+            tx.commit().onComplete(done -> conn.close());
+        });
+
+        rows.exceptionHandler(err -> {
+            finished[0] = true;
+            System.err.println("Export of " + fileName + " failed: " + err.getMessage());
+            // Headers are already sent; abort so the client never sees a truncated body as complete
+            response.reset();
+            tx.rollback().onComplete(done -> conn.close());
+        });
+
+        // Client went away mid-export: stop reading and release the connection
+        response.closeHandler(v -> {
+            if (!finished[0]) {
+                finished[0] = true;
+                rows.close();
+                tx.rollback().onComplete(done -> conn.close());
+            }
+        });
+    }
+
+    private void fail(RoutingContext ctx, SqlConnection conn, Transaction tx, Throwable err) {
+        if (tx != null) {
+            tx.rollback().onComplete(done -> conn.close());
+        } else {
+            conn.close();
+        }
+        ctx.response().setStatusCode(500).end(err.getMessage());
+    }
+
+    private static void appendCsvHeader(Buffer chunk, Row row, Map<String, Function<Row, Object>> computed) {
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) chunk.appendString(",");
+            appendCsvValue(chunk, row.getColumnName(i));
+        }
+        for (String name : computed.keySet()) {
+            chunk.appendString(",");
+            appendCsvValue(chunk, name);
+        }
+        chunk.appendString("\r\n");
+    }
+
+    private static void appendCsvRow(Buffer chunk, Row row, Map<String, Function<Row, Object>> computed) {
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) chunk.appendString(",");
+            appendCsvField(chunk, row.getValue(i));
+        }
+        for (Function<Row, Object> value : computed.values()) {
+            chunk.appendString(",");
+            appendCsvField(chunk, value.apply(row));
+        }
+        chunk.appendString("\r\n");
+    }
+
+    private static void appendCsvField(Buffer chunk, Object value) {
+        if (value != null) {
+            appendCsvValue(chunk, value.toString());
+        }
+    }
+
+    // RFC 4180 quoting: wrap in quotes when needed and double embedded quotes
+    private static void appendCsvValue(Buffer chunk, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            chunk.appendString(value);
+            return;
+        }
+        chunk.appendString("\"").appendString(value.replace("\"", "\"\"")).appendString("\"");
+    }
+}
@@ -0,0 +1,7 @@
+-- Indexes backing the keyset-paginated product listings.
+
+-- GET /api/products: WHERE salesperson_id = ? AND id > ? ORDER BY id
+CREATE INDEX IF NOT EXISTS products_salesperson_id_id_idx ON products (salesperson_id, id);
+
+-- ?q= name prefix filter: lower(name) LIKE 'prefix%'
+CREATE INDEX IF NOT EXISTS products_lower_name_idx ON products (lower(name) text_pattern_ops);
@@ -0,0 +1,20 @@
+-- One cart line per (customer, product) so "add to cart" can be a single upsert.
+
+-- Merge duplicate lines left behind by the old select-then-insert race
+WITH merged AS (
+    SELECT customer_id, product_id, MIN(id) AS keep_id, SUM(quantity) AS quantity
+    FROM cart
+    GROUP BY customer_id, product_id
+    HAVING COUNT(*) > 1
+)
+UPDATE cart c SET quantity = m.quantity
+FROM merged m
+WHERE c.id = m.keep_id;
+
+DELETE FROM cart c
+USING cart d
+WHERE c.customer_id = d.customer_id
+  AND c.product_id = d.product_id
+  AND c.id > d.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS cart_customer_product_key ON cart (customer_id, product_id);
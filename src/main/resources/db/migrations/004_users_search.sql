@@ -0,0 +1,28 @@
+-- Indexes backing GET /api/users/search and change events for the optional
+-- in-memory prefix index (users.prefixIndex).
+
+-- pg_trgm is a trusted extension (PostgreSQL 13+), so the database owner can create it
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Substring matches: username ILIKE '%term%' OR email ILIKE '%term%'
+CREATE INDEX IF NOT EXISTS users_username_trgm_idx ON users USING gin (username gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS users_email_trgm_idx ON users USING gin (email gin_trgm_ops);
+
+-- Payload: {"op": "INSERT|UPDATE|DELETE", "id": <user id>}
+CREATE OR REPLACE FUNCTION notify_users_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('users_changed', json_build_object('op', TG_OP, 'id', OLD.id)::text);
+    ELSE
+        PERFORM pg_notify('users_changed', json_build_object('op', TG_OP, 'id', NEW.id)::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_changed ON users;
+
+-- Password changes do not affect search, so only username/email updates are published
+CREATE TRIGGER users_changed
+    AFTER INSERT OR DELETE OR UPDATE OF username, email ON users
+    FOR EACH ROW EXECUTE FUNCTION notify_users_changed();
@@ -0,0 +1,15 @@
+-- Publish role changes so every node reloads its RoleRegistry.
+-- The table is tiny and always reloaded whole, so one notification per statement is enough.
+
+CREATE OR REPLACE FUNCTION notify_roles_changed() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('roles_changed', TG_OP);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS roles_changed ON roles;
+
+CREATE TRIGGER roles_changed
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON roles
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_roles_changed();
@@ -0,0 +1,9 @@
+-- Usernames and emails are unique; UserService relies on these indexes
+-- (and their names) instead of checking before every INSERT/UPDATE.
+-- Fails if duplicates already exist: resolve those by hand first, since
+-- which account to keep is not something a migration can decide.
+
+CREATE UNIQUE INDEX IF NOT EXISTS users_username_key ON users (username);
+
+-- NULL emails stay allowed, any number of times
+CREATE UNIQUE INDEX IF NOT EXISTS users_email_key ON users (email);
@@ -0,0 +1,3 @@
+-- Customer logins look customers up by email (AuthService.findAccounts).
+-- Not unique: existing data may repeat an email, the lowest id wins at login.
+CREATE INDEX IF NOT EXISTS customers_email_idx ON customers (email, id);
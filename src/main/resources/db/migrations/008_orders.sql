@@ -0,0 +1,24 @@
+-- Orders placed through POST /api/orders/checkout (OrderService.checkout).
+-- Item name and price are copied from the product at checkout time, so an
+-- order keeps what the customer paid even after the catalog changes.
+
+CREATE TABLE IF NOT EXISTS orders (
+    id SERIAL PRIMARY KEY,
+    customer_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PLACED',
+    total NUMERIC(12, 2) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id SERIAL PRIMARY KEY,
+    order_id INT NOT NULL REFERENCES orders (id) ON DELETE CASCADE,
+    product_id INT NOT NULL,
+    name VARCHAR(200),
+    price NUMERIC(10, 2) NOT NULL,
+    quantity INT NOT NULL CHECK (quantity > 0)
+);
+
+-- A customer's order history, newest first
+CREATE INDEX IF NOT EXISTS orders_customer_idx ON orders (customer_id, id DESC);
+CREATE INDEX IF NOT EXISTS order_items_order_idx ON order_items (order_id);
@@ -0,0 +1,12 @@
+-- Stock moved out of products.stock into the in-memory reservation pools
+-- (InventoryReservations, enabled with inventory.enabled). products.stock
+-- excludes these units, so nothing else can sell them; confirmed
+-- reservations are subtracted here as they are sold. On startup whatever is
+-- still held goes back to products.stock; after turning the feature off for
+-- good, give it back by hand:
+--   WITH returned AS (DELETE FROM inventory_holds RETURNING product_id, quantity)
+--   UPDATE products p SET stock = COALESCE(p.stock, 0) + r.quantity FROM returned r WHERE p.id = r.product_id;
+CREATE TABLE IF NOT EXISTS inventory_holds (
+    product_id INT PRIMARY KEY,
+    quantity INT NOT NULL CHECK (quantity >= 0)
+);
@@ -0,0 +1,47 @@
+-- Publish writes that invalidate the ETags of GET /api/users and GET /api/cart/:customerId,
+-- so every node bumps its EntityVersions. Products need nothing here: their version
+-- follows the catalog cache, which products_changed already keeps current.
+-- Payload: "users", "cart:<customer id>", or "*" when every cart changed.
+
+CREATE OR REPLACE FUNCTION notify_users_version() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('entity_changed', 'users');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS users_version ON users;
+
+-- The whole list shares one version, so one notification per statement is enough
+CREATE TRIGGER users_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_users_version();
+
+-- Identical payloads within a transaction are delivered once, so a batch touching
+-- one cart sends a single notification
+CREATE OR REPLACE FUNCTION notify_cart_version() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_notify('entity_changed', '*');
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        PERFORM pg_notify('entity_changed', 'cart:' || OLD.customer_id);
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        PERFORM pg_notify('entity_changed', 'cart:' || NEW.customer_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS cart_version ON cart;
+DROP TRIGGER IF EXISTS cart_truncated ON cart;
+
+CREATE TRIGGER cart_version
+    AFTER INSERT OR UPDATE OR DELETE ON cart
+    FOR EACH ROW EXECUTE FUNCTION notify_cart_version();
+
+CREATE TRIGGER cart_truncated
+    AFTER TRUNCATE ON cart
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_cart_version();
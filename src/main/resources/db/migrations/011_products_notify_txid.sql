@@ -0,0 +1,14 @@
+-- Add the writing transaction to products_changed, so a node can recognise the
+-- notifications for writes it already applied to its catalog cache.
+-- Payload: {"op": "INSERT|UPDATE|DELETE", "id": <product id>, "txid": <txid_current()>}
+
+CREATE OR REPLACE FUNCTION notify_products_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('products_changed', json_build_object('op', TG_OP, 'id', OLD.id, 'txid', txid_current())::text);
+    ELSE
+        PERFORM pg_notify('products_changed', json_build_object('op', TG_OP, 'id', NEW.id, 'txid', txid_current())::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
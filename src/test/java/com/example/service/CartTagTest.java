@@ -0,0 +1,79 @@
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.util.EntityVersions;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Cart bodies show the current product name, price and image, so a cart ETag
+ * must stop matching when any of those change, even with no cart write.
+ */
+class CartTagTest {
+
+    private static final int CUSTOMER_ID = 7;
+
+    private Vertx vertx;
+    private ProductCatalogCache catalog;
+    private CartService carts;
+    private long txid;
+
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        EntityVersions versions = new EntityVersions();
+        catalog = new ProductCatalogCache(vertx, null, versions);
+        carts = new CartService(null, null, versions);
+        catalog.put(product(1, "Mug", 9.99, 10), ++txid);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void priceChangeInvalidatesCartTag() {
+        String before = carts.cartTag(CUSTOMER_ID);
+        catalog.put(product(1, "Mug", 12.50, 10), ++txid);
+        assertNotEquals(before, carts.cartTag(CUSTOMER_ID));
+    }
+
+    @Test
+    void nameChangeInvalidatesCartTag() {
+        String before = carts.cartTag(CUSTOMER_ID);
+        catalog.put(product(1, "Large mug", 9.99, 10), ++txid);
+        assertNotEquals(before, carts.cartTag(CUSTOMER_ID));
+    }
+
+    @Test
+    void productRemovalInvalidatesCartTag() {
+        String before = carts.cartTag(CUSTOMER_ID);
+        catalog.remove(1, ++txid);
+        assertNotEquals(before, carts.cartTag(CUSTOMER_ID));
+    }
+
+    @Test
+    void stockChangeKeepsCartTag() {
+        String before = carts.cartTag(CUSTOMER_ID);
+        catalog.put(product(1, "Mug", 9.99, 3), ++txid);
+        assertEquals(before, carts.cartTag(CUSTOMER_ID));
+    }
+
+    private static JsonObject product(int id, String name, double price, int stock) {
+        return new JsonObject()
+            .put("id", id)
+            .put("name", name)
+            .put("price", price)
+            .put("stock", stock)
+            .put("image_url", "/img/" + id + ".png")
+            .put("salesperson_id", 0);
+    }
+}